@@ -0,0 +1,232 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/** AsyncLineWriter.java – Appends lines to a text file from one background thread (group commit).
+ *  append() only queues the line; the writer drains the queue in batches into one buffered stream
+ *  and flushes when the queue runs dry or FLUSH_INTERVAL_MS has passed. A roll (close and rename the
+ *  file) is queued the same way, so it happens on the writer thread between the lines around it. */
+public class AsyncLineWriter {
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final int MAX_BATCH = 4096;
+    private static final long FLUSH_INTERVAL_MS = 200;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String path;
+    private final ArrayBlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(QUEUE_CAPACITY);   // String lines and Roll markers
+    private final Thread worker;
+    private final Object fileLock = new Object();     // held while the file is written/truncated
+    private Writer out;                                // opened lazily in append mode
+
+    /** Queued by rollTo(): the file is renamed once every line queued before it is written */
+    private static final class Roll {
+        final String sealedPath;
+        final Runnable then;
+
+        Roll(String sealedPath, Runnable then) {
+            this.sealedPath = sealedPath;
+            this.then = then;
+        }
+    }
+
+    // flush barrier: entries accepted by append()/rollTo() vs entries written and flushed by the worker
+    private long accepted = 0;
+    private long flushed = 0;
+    private long dropped = 0;
+    private volatile boolean closed = false;
+
+    public AsyncLineWriter(String path, String threadName) {
+        this.path = path;
+        worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Queue one line (without '\n'). Never blocks: if the queue is full the line is dropped and counted.
+     *  Returns false if the line was not accepted. */
+    public boolean append(String line) {
+        if (closed) return false;
+        synchronized (this) {
+            if (!queue.offer(line)) {
+                dropped++;
+                return false;
+            }
+            accepted++;
+            return true;
+        }
+    }
+
+    /** Wait until every line appended before this call is written and flushed to the file */
+    public void flush() {
+        long target;
+        synchronized (this) {
+            target = accepted;
+        }
+        waitFlushed(target);
+    }
+
+    /** flush(), then force the file's content to the storage device (fsync) */
+    public void force() throws IOException {
+        flush();
+        synchronized (fileLock) {
+            if (!new java.io.File(path).exists()) return;
+            try (java.nio.channels.FileChannel ch = java.nio.channels.FileChannel.open(java.nio.file.Paths.get(path), java.nio.file.StandardOpenOption.WRITE)) {
+                ch.force(false);
+            }
+        }
+    }
+
+    /** Empty the file (after writing what is still queued, so nothing lands after the truncation) */
+    public void truncate() throws IOException {
+        flush();
+        synchronized (fileLock) {
+            closeFile();
+            new FileOutputStream(path, false).close();
+        }
+    }
+
+    /** Queue a roll: once the lines appended before it are written, the worker closes the file, renames it
+     *  to `sealedPath` and runs `then` (may be null); lines appended after it start a new file.
+     *  Never blocks. Returns false (nothing queued) if the queue is full. */
+    public boolean rollTo(String sealedPath, Runnable then) {
+        if (closed) return false;
+        synchronized (this) {
+            if (!queue.offer(new Roll(sealedPath, then))) return false;
+            accepted++;
+            return true;
+        }
+    }
+
+    /** Lines lost because the queue was full */
+    public synchronized long droppedCount() {
+        return dropped;
+    }
+
+    /** Write everything queued, stop the worker and close the file (used by the shutdown hook) */
+    public void close() {
+        flush();
+        closed = true;
+        worker.interrupt();
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (fileLock) {
+            closeFile();
+        }
+    }
+
+    private void run() {
+        ArrayList<Object> batch = new ArrayList<Object>(MAX_BATCH);
+        long lastFlush = System.currentTimeMillis();
+        int unflushed = 0;
+        while (!(closed && queue.isEmpty() && unflushed == 0)) {
+            try {
+                Object first = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                    writeBatch(batch);
+                    unflushed += batch.size();
+                    batch.clear();
+                }
+                long now = System.currentTimeMillis();
+                if (unflushed > 0 && (queue.isEmpty() || now - lastFlush >= FLUSH_INTERVAL_MS)) {
+                    flushFile();
+                    markFlushed(unflushed);
+                    unflushed = 0;
+                    lastFlush = now;
+                }
+            } catch (InterruptedException e) {
+                // close(): loop once more to write anything still queued
+            }
+        }
+    }
+
+    private void writeBatch(ArrayList<Object> batch) {
+        synchronized (fileLock) {
+            for (int i = 0; i < batch.size(); i++) {
+                Object entry = batch.get(i);
+                if (entry instanceof Roll) {
+                    roll((Roll) entry);
+                    continue;
+                }
+                try {
+                    if (out == null) {
+                        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path, true), StandardCharsets.UTF_8), BUFFER_SIZE);
+                    }
+                    out.write((String) entry);
+                    out.write('\n');
+                } catch (IOException e) {
+                    closeFile();   // ignore logging errors; reopen on the next line
+                }
+            }
+        }
+    }
+
+    /** Close the file and move it to the sealed name (copy + truncate if it cannot be renamed),
+     *  so the next line starts an empty file either way. Caller holds fileLock. */
+    private void roll(Roll r) {
+        closeFile();
+        java.nio.file.Path active = java.nio.file.Paths.get(path);
+        java.nio.file.Path sealed = java.nio.file.Paths.get(r.sealedPath);
+        try {
+            if (java.nio.file.Files.exists(active)) {
+                try {
+                    java.nio.file.Files.move(active, sealed, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    java.nio.file.Files.copy(active, sealed, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+                    new FileOutputStream(path, false).close();
+                }
+            }
+        } catch (IOException e) {
+            return;   // ignore logging errors: the lines stay in the active file
+        }
+        if (r.then != null) r.then.run();
+    }
+
+    private void flushFile() {
+        synchronized (fileLock) {
+            try {
+                if (out != null) out.flush();
+            } catch (IOException e) {
+                closeFile();
+            }
+        }
+    }
+
+    private void closeFile() {
+        try {
+            if (out != null) out.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        out = null;
+    }
+
+    private synchronized void markFlushed(int lines) {
+        flushed += lines;
+        notifyAll();
+    }
+
+    private synchronized void waitFlushed(long target) {
+        long deadline = System.currentTimeMillis() + 5000;   // never hang the UI on a stuck disk
+        while (flushed < target && worker.isAlive()) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) return;
+            try {
+                wait(Math.min(left, FLUSH_INTERVAL_MS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
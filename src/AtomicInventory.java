@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/** AtomicInventory.java – Lock-free Inventory: one atomic counter per product, reserved with compare-and-set
+ *
+ *  The counters are seeded from Product.stock when the inventory is created and written back with
+ *  writeBack() (call it when the batch is done; nothing else should change stock meanwhile).
+ *  Hot products can be split over several counter cells so concurrent reservations of the same SKU
+ *  mostly CAS different cache lines. An order reserves its products one by one and gives back what it
+ *  already took if a later product is short, so it never ends half-reserved.
+ */
+public class AtomicInventory implements Inventory {
+    public static final int SPLIT_CELLS = 16;
+    private static final int PAD = 16;                 // ints per cell (64 bytes) so cells do not share a cache line
+
+    /** Stock of one product; plain products use a single cell */
+    private static final class Counter {
+        final Product product;
+        final AtomicInteger single;                    // non-split products
+        final AtomicIntegerArray cells;                // split products: cell c lives at index c * PAD
+
+        Counter(Product product, boolean split) {
+            this.product = product;
+            int stock = Math.max(0, product.stock);
+            if (split) {
+                single = null;
+                cells = new AtomicIntegerArray(SPLIT_CELLS * PAD);
+                for (int c = 0; c < SPLIT_CELLS; c++) cells.set(c * PAD, stock / SPLIT_CELLS);
+                cells.addAndGet(0, stock % SPLIT_CELLS);
+            } else {
+                single = new AtomicInteger(stock);
+                cells = null;
+            }
+        }
+
+        boolean reserve(int qty) {
+            if (single != null) {
+                while (true) {
+                    int v = single.get();
+                    if (v < qty) return false;
+                    if (single.compareAndSet(v, v - qty)) return true;
+                }
+            }
+            int home = homeCell();
+            // fast path: one cell (own cell first) covers the whole quantity
+            for (int k = 0; k < SPLIT_CELLS; k++) {
+                int idx = ((home + k) & (SPLIT_CELLS - 1)) * PAD;
+                while (true) {
+                    int v = cells.get(idx);
+                    if (v < qty) break;
+                    if (cells.compareAndSet(idx, v, v - qty)) return true;
+                }
+            }
+            // slow path: gather from several cells, give everything back if the total is short
+            if (available() < qty) return false;      // read-only check first: a sold-out item fails without any CAS
+            int[] taken = new int[SPLIT_CELLS];
+            int need = qty;
+            for (int k = 0; k < SPLIT_CELLS && need > 0; k++) {
+                int c = (home + k) & (SPLIT_CELLS - 1);
+                while (true) {
+                    int v = cells.get(c * PAD);
+                    if (v <= 0) break;
+                    int take = Math.min(v, need);
+                    if (cells.compareAndSet(c * PAD, v, v - take)) {
+                        taken[c] += take;
+                        need -= take;
+                        break;
+                    }
+                }
+            }
+            if (need == 0) return true;
+            for (int c = 0; c < SPLIT_CELLS; c++) {
+                if (taken[c] > 0) cells.addAndGet(c * PAD, taken[c]);
+            }
+            return false;
+        }
+
+        void release(int qty) {
+            if (single != null) single.addAndGet(qty);
+            else cells.addAndGet(homeCell() * PAD, qty);
+        }
+
+        int available() {
+            if (single != null) return single.get();
+            int sum = 0;
+            for (int c = 0; c < SPLIT_CELLS; c++) sum += cells.get(c * PAD);
+            return sum;
+        }
+
+        private static int homeCell() {
+            long id = Thread.currentThread().getId();
+            return (int) ((id * 0x9E3779B9L) >>> 16) & (SPLIT_CELLS - 1);
+        }
+    }
+
+    private final DataPersistence dp;
+    private final IdentityHashMap<Product, Counter> counters = new IdentityHashMap<Product, Counter>();
+
+    /** Seed counters from the catalog; products listed in hotProductIds get split counters */
+    public AtomicInventory(DataPersistence dp, List<String> hotProductIds) {
+        this.dp = dp;
+        ArrayList<Product> hot = new ArrayList<Product>();
+        for (int i = 0; i < hotProductIds.size(); i++) {
+            Product p = dp.findProductById(hotProductIds.get(i));
+            if (p != null) hot.add(p);
+        }
+        for (int i = 0; i < dp.productCount; i++) {
+            Product p = dp.products[i];
+            if (p == null || counters.containsKey(p)) continue;
+            counters.put(p, new Counter(p, hot.contains(p)));
+        }
+    }
+
+    /** Products ordered by at least `minShare` of the given orders (at most `max` of them): split candidates */
+    public static List<String> hotProducts(DataPersistence dp, List<Order> orders, double minShare, int max) {
+        IdentityHashMap<Product, int[]> seen = new IdentityHashMap<Product, int[]>();
+        for (int i = 0; i < orders.size(); i++) {
+            Order o = orders.get(i);
+            for (int k = 0; k < o.itemCount; k++) {
+                Item it = o.items[k];
+                if (it == null) continue;
+                Product p = dp.findProductById(it.productId);
+                if (p == null) continue;
+                int[] n = seen.get(p);
+                if (n == null) seen.put(p, n = new int[1]);
+                n[0]++;
+            }
+        }
+        ArrayList<Product> ranked = new ArrayList<Product>(seen.keySet());
+        ranked.sort((a, b) -> seen.get(b)[0] - seen.get(a)[0]);
+        ArrayList<String> hot = new ArrayList<String>();
+        for (int i = 0; i < ranked.size() && hot.size() < max; i++) {
+            if (seen.get(ranked.get(i))[0] < orders.size() * minShare) break;
+            hot.add(ranked.get(i).productId);
+        }
+        return hot;
+    }
+
+    public String reserve(Order order) {
+        for (int i = 0; i < order.itemCount; i++) {
+            Item it = order.items[i];
+            if (it == null) continue;
+            Counter c = counterOf(it.productId);
+            if (c == null || !c.reserve(it.quantity)) {
+                undo(order, i);
+                return it.productId;
+            }
+        }
+        return null;
+    }
+
+    public void release(Order order) {
+        undo(order, order.itemCount);
+    }
+
+    public int available(String productId) {
+        Counter c = counterOf(productId);
+        return c == null ? 0 : c.available();
+    }
+
+    /** Copy the counters back into Product.stock (after the workers are finished) */
+    public void writeBack() {
+        for (Counter c : counters.values()) c.product.stock = c.available();
+    }
+
+    /** Release items [0, end) of the order */
+    private void undo(Order order, int end) {
+        for (int i = 0; i < end; i++) {
+            Item it = order.items[i];
+            if (it == null) continue;
+            Counter c = counterOf(it.productId);
+            if (c != null) c.release(it.quantity);
+        }
+    }
+
+    private Counter counterOf(String productId) {
+        Product p = dp.findProductById(productId);
+        return p == null ? null : counters.get(p);
+    }
+}
@@ -0,0 +1,116 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/** AtomicSaveGroup.java – Crash-safe saves: each file is written to a sibling temp file, all temps are
+ *  synced to disk once, then renamed over the originals (a crash leaves either the old or the new file) */
+public class AtomicSaveGroup {
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static class Target {
+        final Path finalPath;
+        final Path tmpPath;
+        final FileOutputStream fos;
+        final OutputStream out;      // fos itself (text: the writer buffers) or a buffered stream over it
+        Target(Path finalPath, Path tmpPath, FileOutputStream fos, OutputStream out) {
+            this.finalPath = finalPath;
+            this.tmpPath = tmpPath;
+            this.fos = fos;
+            this.out = out;
+        }
+    }
+
+    private final ArrayList<Target> targets = new ArrayList<Target>();
+    private final ArrayList<Writer> writers = new ArrayList<Writer>();
+
+    /** Open a buffered UTF-8 text writer whose content replaces `path` on commit() */
+    public Writer openWriter(String path) throws IOException {
+        Target t = openTemp(path, false);
+        Writer w = new BufferedWriter(new OutputStreamWriter(t.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writers.add(w);
+        return w;
+    }
+
+    /** Open a buffered binary stream whose content replaces `path` on commit() */
+    public OutputStream openStream(String path) throws IOException {
+        return openTemp(path, true).out;
+    }
+
+    private Target openTemp(String path, boolean buffered) throws IOException {
+        Path finalPath = Paths.get(path);
+        Path tmpPath = Paths.get(path + TMP_SUFFIX);
+        FileOutputStream fos = new FileOutputStream(tmpPath.toFile(), false);
+        OutputStream out = (buffered ? new BufferedOutputStream(fos, BUFFER_SIZE) : fos);
+        Target t = new Target(finalPath, tmpPath, fos, out);
+        targets.add(t);
+        return t;
+    }
+
+    /** Flush every temp file, sync them all, then rename each over its original. */
+    public void commit() throws IOException {
+        try {
+            for (int i = 0; i < writers.size(); i++) writers.get(i).flush();
+            for (int i = 0; i < targets.size(); i++) {
+                Target t = targets.get(i);
+                t.out.flush();
+                t.fos.getChannel().force(true);   // one sync per file for the whole group, not per record
+                t.fos.close();
+            }
+        } catch (IOException e) {
+            abort();
+            throw e;
+        }
+
+        for (int i = 0; i < targets.size(); i++) {
+            Target t = targets.get(i);
+            try {
+                Files.move(t.tmpPath, t.finalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(t.tmpPath, t.finalPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        syncDirectories();
+        targets.clear();
+        writers.clear();
+    }
+
+    /** Close and delete all temp files; the originals are untouched */
+    public void abort() {
+        for (int i = 0; i < targets.size(); i++) {
+            Target t = targets.get(i);
+            try { t.fos.close(); } catch (IOException e) { /* ignore */ }
+            try { Files.deleteIfExists(t.tmpPath); } catch (IOException e) { /* ignore */ }
+        }
+        targets.clear();
+        writers.clear();
+    }
+
+    /** Make the renames durable (sync each distinct parent directory once). Not supported on every OS. */
+    private void syncDirectories() {
+        ArrayList<Path> done = new ArrayList<Path>();
+        for (int i = 0; i < targets.size(); i++) {
+            Path dir = targets.get(i).finalPath.toAbsolutePath().getParent();
+            if (dir == null || done.contains(dir)) continue;
+            done.add(dir);
+            try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+                ch.force(true);
+            } catch (IOException e) {
+                // directories cannot be opened/synced on some platforms (e.g. Windows)
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/** BinarySnapshot.java – Compact, versioned binary encoding used for the data snapshot (snapshot.bin)
+ *
+ *  Layout: "SPLS" magic, version, then sections written by DataPersistence, then "SPLS" again as an end marker.
+ *  - numbers are varints (signed values zig-zag encoded)
+ *  - strings are length-prefixed UTF-8
+ *  - dictionary strings (status, payment mode, category, ...) are written once; later uses are a varint index
+ */
+public class BinarySnapshot {
+    public static final int VERSION = 1;
+    private static final byte[] MAGIC = { 'S', 'P', 'L', 'S' };
+
+    /** Streaming writer for the snapshot format */
+    public static class Writer {
+        private final DataOutputStream out;
+        private final HashMap<String, Integer> dict = new HashMap<String, Integer>();
+
+        /** Wraps an (already buffered) stream, e.g. from AtomicSaveGroup.openStream */
+        public Writer(OutputStream os) throws IOException {
+            out = new DataOutputStream(os);
+            out.write(MAGIC);
+            writeVarint(VERSION);
+        }
+
+        public void writeVarint(long v) throws IOException {
+            while ((v & ~0x7FL) != 0) {
+                out.writeByte((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+
+        /** Signed int as a zig-zag varint (small negatives stay small) */
+        public void writeInt(long v) throws IOException {
+            writeVarint((v << 1) ^ (v >> 63));
+        }
+
+        public void writeString(String s) throws IOException {
+            byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            writeVarint(b.length);
+            out.write(b);
+        }
+
+        /** Repeated value: 0 + string the first time, then (index + 1) */
+        public void writeDict(String s) throws IOException {
+            if (s == null) s = "";
+            Integer idx = dict.get(s);
+            if (idx != null) {
+                writeVarint(idx + 1);
+                return;
+            }
+            writeVarint(0);
+            writeString(s);
+            dict.put(s, dict.size());
+        }
+
+        /** Write the end marker and flush (a snapshot without it is treated as truncated) */
+        public void finish() throws IOException {
+            out.write(MAGIC);
+            out.flush();
+        }
+    }
+
+    /** Streaming reader for the snapshot format */
+    public static class Reader {
+        private final DataInputStream in;
+        private final ArrayList<String> dict = new ArrayList<String>();
+
+        public Reader(String path) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(path), 1 << 16));
+            if (!readMagic()) {
+                close();
+                throw new IOException("Not a snapshot file");
+            }
+            long version = readVarint();
+            if (version != VERSION) {
+                close();
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+        }
+
+        public long readVarint() throws IOException {
+            long v = 0;
+            int shift = 0;
+            while (true) {
+                int b = in.readUnsignedByte();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+                shift += 7;
+                if (shift > 63) throw new IOException("Corrupt varint");
+            }
+        }
+
+        public int readInt() throws IOException {
+            long z = readVarint();
+            return (int) ((z >>> 1) ^ -(z & 1));
+        }
+
+        public String readString() throws IOException {
+            long len = readVarint();
+            if (len < 0 || len > Integer.MAX_VALUE) throw new IOException("Corrupt string length");
+            byte[] b = new byte[(int) len];
+            in.readFully(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+
+        public String readDict() throws IOException {
+            long code = readVarint();
+            if (code == 0) {
+                String s = readString();
+                dict.add(s);
+                return s;
+            }
+            if (code > dict.size()) throw new IOException("Corrupt dictionary reference");
+            return dict.get((int) (code - 1));
+        }
+
+        /** True if the end marker is present (the snapshot was completely written) */
+        public boolean finish() throws IOException {
+            try {
+                return readMagic();
+            } catch (EOFException e) {
+                return false;
+            } finally {
+                close();
+            }
+        }
+
+        public void close() {
+            try { in.close(); } catch (IOException e) { /* ignore */ }
+        }
+
+        private boolean readMagic() throws IOException {
+            byte[] m = new byte[MAGIC.length];
+            in.readFully(m);
+            for (int i = 0; i < m.length; i++) {
+                if (m[i] != MAGIC[i]) return false;
+            }
+            return true;
+        }
+    }
+}
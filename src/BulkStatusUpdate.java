@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/** BulkStatusUpdate.java – Advances many orders one step through the OrderStatus table in one pass
+ *
+ *  Orders are selected by status, date range and/or an ID list; each eligible one moves to status.next()
+ *  (orders reaching SHIPPED get their tracking ID). The log entries go out as one batch and the changed
+ *  orders are saved once at the end: one journal append (or one orders.txt rewrite) per run, not per order.
+ */
+public class BulkStatusUpdate {
+
+    /** Outcome counts of one advance() run */
+    public static class Result {
+        public int selected;           // orders matching the filters
+        public int advanced;
+        public int notEligible;        // PENDING (packed by OrderProcessor) or already DELIVERED/CANCELLED
+        public int notFound;           // listed IDs that do not exist
+        public int[] advancedTo = new int[OrderStatus.count()];   // advanced orders per new status
+        public int trackingAssigned;
+        public int saved;              // records written by the final save
+        public long nanos;
+    }
+
+    private final DataPersistence dp;
+    private final Log log;
+
+    public BulkStatusUpdate(DataPersistence dp, Log log) {
+        this.dp = dp;
+        this.log = log;
+    }
+
+    /** Advance every selected order one step.
+     *  status: null = any; fromDate / toDate: "YYYY-MM-DD", inclusive, null or "" = open;
+     *  orderIds: null or empty = every resident order (on-disk history is finished and never advances). */
+    public Result advance(OrderStatus status, String fromDate, String toDate, List<String> orderIds) throws Exception {
+        Result r = new Result();
+        long t0 = System.nanoTime();
+        ArrayList<Order> selected = new ArrayList<Order>();
+
+        if (orderIds != null && !orderIds.isEmpty()) {
+            IdentityHashMap<Order, Boolean> seen = new IdentityHashMap<Order, Boolean>();
+            for (int i = 0; i < orderIds.size(); i++) {
+                Order o = dp.findOrderById(orderIds.get(i).trim());
+                if (o == null) {
+                    r.notFound++;
+                } else if (inRange(o, status, fromDate, toDate) && seen.put(o, Boolean.TRUE) == null) {
+                    selected.add(o);
+                }
+            }
+        } else {
+            BitSet slots = dp.slotsWithStatus(status == null ? OrderStatus.ALL : status.bit());
+            for (int i = slots.nextSetBit(dp.historySlotCount()); i >= 0; i = slots.nextSetBit(i + 1)) {   // resident slots only
+                Order o = dp.orderInSlot(i);
+                if (o != null && inRange(o, null, fromDate, toDate)) selected.add(o);
+            }
+        }
+        r.selected = selected.size();
+
+        String[] ids = new String[selected.size()];
+        String[] messages = new String[selected.size()];
+        int n = 0;
+        for (int i = 0; i < selected.size(); i++) {
+            Order o = selected.get(i);
+            OrderStatus next = o.status.next();
+            if (next == null) {
+                r.notEligible++;
+                continue;
+            }
+            dp.setStatus(o, next);
+            if (next == OrderStatus.SHIPPED) {
+                o.trackingId = OrderProcessor.trackingId(o);
+                r.trackingAssigned++;
+            }
+            dp.markOrderDirty(o);
+            r.advancedTo[next.ordinal()]++;
+            ids[n] = o.orderId;
+            messages[n] = "Status changed to " + next;
+            n++;
+        }
+        r.advanced = n;
+
+        if (n > 0) {
+            log.writeAll(ids, messages, n);
+            dp.saveAll();
+            r.saved = dp.lastFlushCount;
+        }
+        r.nanos = System.nanoTime() - t0;
+        return r;
+    }
+
+    private static boolean inRange(Order o, OrderStatus status, String fromDate, String toDate) {
+        if (status != null && o.status != status) return false;
+        String d = (o.date == null ? "" : o.date);
+        if (fromDate != null && fromDate.length() > 0 && d.compareTo(fromDate) < 0) return false;   // ISO dates sort as text
+        if (toDate != null && toDate.length() > 0 && d.compareTo(toDate) > 0) return false;
+        return true;
+    }
+}
@@ -0,0 +1,166 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** ConcurrentOrderEngine.java – Processes PENDING orders in parallel on a worker pool
+ *
+ *  Same steps and log entries as OrderProcessor.process, but stock goes through a thread-safe Inventory
+ *  (all-or-nothing reserve, exact release on payment failure): striped locks by default, or lock-free
+ *  atomic counters with split cells for the hottest products. Which of two orders competing for the last
+ *  units wins depends on scheduling, not on file order. The payment policy must not prompt.
+ */
+public class ConcurrentOrderEngine {
+    private static final int PACKED = 0;
+    private static final int SHORTAGE = 1;
+    private static final int DECLINED = 2;
+    private static final int INVALID = 3;
+    private static final int FLUSH_EVERY = 4096;      // orders between log flushes (keeps the log queues from overflowing)
+    private static final double HOT_SHARE = 0.05;     // lock-free mode: products in >= 5% of the orders get split counters
+    private static final int MAX_HOT = 8;
+
+    private final DataPersistence dp;
+    private final Log log;
+    private final boolean lockFree;
+    private final int threads;
+    private Inventory inventory;
+    private InvoiceLedger invoices;
+    private final AtomicInteger done = new AtomicInteger();
+
+    public ConcurrentOrderEngine(DataPersistence dp, Log log, int threads, boolean lockFree) {
+        this.dp = dp;
+        this.log = log;
+        this.threads = Math.max(1, threads);
+        this.lockFree = lockFree;
+    }
+
+    /** Process every PENDING order on `threads` workers, then save once */
+    public OrderProcessor.BatchResult processAllPending(PaymentPolicy payment) throws Exception {
+        OrderProcessor.BatchResult r = new OrderProcessor.BatchResult();
+        long t0 = System.nanoTime();
+
+        ArrayList<Order> pending = new ArrayList<Order>();
+        for (int i = 0; i < dp.orderCount; i++) {
+            Order o = dp.orders[i];
+            if (o != null && o.status == OrderStatus.PENDING) pending.add(o);
+        }
+        r.pending = pending.size();
+
+        AtomicInventory atomic = null;
+        if (lockFree) {
+            atomic = new AtomicInventory(dp, AtomicInventory.hotProducts(dp, pending, HOT_SHARE, MAX_HOT));
+            inventory = atomic;
+        } else {
+            inventory = new StripedLockInventory(dp);
+        }
+
+        invoices = dp.invoices();
+        dp.orderSteps();                 // open the step ledger before the workers share it
+        int duplicatesBefore = invoices.suppressedCount();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            int chunkCount = Math.max(1, Math.min(threads * 4, pending.size()));
+            List<Future<int[]>> chunks = new ArrayList<Future<int[]>>();
+            for (int c = 0; c < chunkCount; c++) {
+                final int from = pending.size() * c / chunkCount;
+                final int to = pending.size() * (c + 1) / chunkCount;
+                chunks.add(pool.submit((Callable<int[]>) () -> {
+                    int[] counts = new int[4];
+                    for (int i = from; i < to; i++) {
+                        counts[processOne(pending.get(i), payment)]++;
+                        if (done.incrementAndGet() % FLUSH_EVERY == 0) log.flush();
+                    }
+                    return counts;
+                }));
+            }
+            for (int c = 0; c < chunks.size(); c++) {
+                int[] counts = await(chunks.get(c));
+                r.packed += counts[PACKED];
+                r.stockShortage += counts[SHORTAGE];
+                r.paymentDeclined += counts[DECLINED];
+                r.invalidProduct += counts[INVALID];
+            }
+        } finally {
+            pool.shutdown();
+            if (atomic != null) atomic.writeBack();
+            invoices.flush();
+        }
+        r.duplicateInvoices = invoices.suppressedCount() - duplicatesBefore;
+
+        // dirty tracking is single-threaded: mark after the workers are done
+        for (int i = 0; i < pending.size(); i++) dp.markOrderDirty(pending.get(i));
+        if (r.pending > 0) dp.markProductsDirty();
+        dp.saveAll();
+        r.saved = dp.lastFlushCount;
+        r.nanos = System.nanoTime() - t0;
+        return r;
+    }
+
+    /** Same steps as OrderProcessor.process (without holds: batch payment policies answer at once) */
+    private int processOne(Order order, PaymentPolicy payment) throws Exception {
+        StepLedger steps = (OrderProcessor.ownsId(dp, order) ? dp.orderSteps() : null);
+        boolean stockTaken = (steps != null && steps.done(order, StepLedger.STOCK));
+        if (!stockTaken) {
+            String shortId = inventory.reserve(order);
+            if (shortId != null) {
+                dp.setStatus(order, OrderStatus.CANCELLED);
+                if (dp.findProductById(shortId) == null) {
+                    order.cancelReason = "Invalid product " + shortId;
+                    log.write(order.orderId, "Order cancelled - " + order.cancelReason);
+                    return INVALID;
+                }
+                order.cancelReason = "Inventory Shortage: " + shortId;
+                log.write(order.orderId, "Order cancelled -" + order.cancelReason);
+                return SHORTAGE;
+            }
+            log.write(order.orderId, "Inventory OK – stock reserved");
+        }
+
+        int total = 0;
+        for (int i = 0; i < order.itemCount; i++) {
+            Item it = order.items[i];
+            if (it == null) continue;
+            Product prod = dp.findProductById(it.productId);
+            total += (prod != null ? prod.price : 0) * it.quantity;
+        }
+        order.totalAmount = total;
+
+        boolean paid = (steps != null && steps.done(order, StepLedger.PAYMENT)) || payment.authorize(order);
+        if (!paid) {
+            inventory.release(order);
+            dp.setStatus(order, OrderStatus.CANCELLED);
+            order.cancelReason = "Payment Declined";
+            log.write(order.orderId, "Order cancelled - " + order.cancelReason);
+            return DECLINED;
+        }
+        if (steps != null) {
+            steps.record(order, StepLedger.PAYMENT, "");
+            steps.record(order, StepLedger.STOCK, "");
+        }
+
+        dp.setStatus(order, OrderStatus.PACKED);
+        log.write(order.orderId, "Status changed to PACKED");
+        if (steps == null || !steps.done(order, StepLedger.INVOICE)) {
+            String invoiceId = OrderProcessor.invoiceId(order);
+            if (!invoices.append(invoiceId, order.totalAmount)) {
+                log.write(order.orderId, "Invoice " + invoiceId + " already exists – duplicate not written");
+            }
+            if (steps != null) steps.record(order, StepLedger.INVOICE, "");
+        }
+        return PACKED;
+    }
+
+    /** Future.get() that rethrows the task's own exception */
+    private static <T> T await(Future<T> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+}
@@ -1,6 +1,20 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.FileWriter;    
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 
 /** DataPersistence.java – Handles loading and saving of data from text files */
@@ -18,15 +32,77 @@ public class DataPersistence {
 
     private String baseDir;
     // Data stores in memory
-    public Product[] products = new Product[200];
+    public Product[] products = new Product[200];   // grows on demand (see addProduct)
     public int productCount = 0;
-    public Order[] orders = new Order[200];
+    private HashMap<String, Product> productIndex = new HashMap<String, Product>();  // upper-case ProductID -> Product
+    public Order[] orders = new Order[200];         // grows on demand (see addOrder)
     public int orderCount = 0;
-    public Admin[] admins = new Admin[50];
+    private HashMap<String, Order> orderIndex = new HashMap<String, Order>();        // canonical OrderID ("O1019") -> Order
+    public Admin[] admins = new Admin[50];          // grows on demand (see addAdmin)
     public int adminCount = 0;
+    private HashMap<String, Admin> adminIndex = new HashMap<String, Admin>();        // username -> Admin
     public int currentAdminIndex = -1;        // index of the currently logged-in admin
     private int nextOrderNumber = 1001;       // next numeric ID for new orders (starting from O1001)
 
+    // Order journal: status changes append one record instead of rewriting orders.txt
+    private static final String JOURNAL_FILE = "orders_journal.txt";
+    private static final int JOURNAL_COMPACT_THRESHOLD = 500;   // fold into orders.txt after this many records
+    public boolean journalEnabled = true;
+    private int journalRecords = 0;           // records appended since the last compaction
+
+    // Parallel startup: admins + products load concurrently, orders.txt is parsed in chunks
+    public boolean parallelStartup = true;
+    private static final long MIN_ORDER_CHUNK = 4L * 1024 * 1024;   // don't split orders.txt finer than 4 MB
+
+    // Binary snapshot written by saveAll; preferred at startup while the .txt files are unchanged
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String[] SNAPSHOT_SOURCES = { "products.txt", "orders.txt", "admins.txt" };
+    public boolean snapshotEnabled = true;
+    private boolean snapshotCurrent = false;  // snapshot.bin matches the .txt files + journal
+
+    // Dirty tracking: saveAll only writes what changed since the last flush
+    private boolean trackChanges = false;     // off while loading (loading is not a change)
+    private boolean productsDirty = false;
+    private boolean adminsDirty = false;
+    private boolean ordersDirty = false;      // structural change (archive/clear): orders.txt must be rewritten
+    private LinkedHashSet<Order> dirtyOrders = new LinkedHashSet<Order>();  // changed/new orders, in change order
+    public int lastFlushCount = 0;            // records written by the last saveAll
+
+    // Tiered history: DELIVERED/CANCELLED rows stay in orders.txt (offset + ID index only)
+    // and are read back a page at a time when a search, report or receipt needs them
+    public boolean tieredHistory = false;
+    private static final int HISTORY_PAGE_SIZE = 256;
+    private static final int HISTORY_CACHED_PAGES = 8;
+    private long[] historyOffsets = new long[256];  // line offset in orders.txt per slot (file order); -1 = superseded
+    private int historySlots = 0;
+    private int historyLive = 0;
+    private HashMap<String, Integer> historyIndex = new HashMap<String, Integer>();          // canonical OrderID -> slot
+    private boolean[] historyCancelled = new boolean[256];  // per slot: CANCELLED (else DELIVERED)
+    private int historyCancelledCount = 0;  // live slots per status, for summaries without reading pages
+    private IdentityHashMap<Order, Long> residentOffsets = new IdentityHashMap<Order, Long>(); // resident order -> its line in orders.txt
+    private long[] pendingHistoryOffsets;           // layout of an orders.txt written but not yet committed
+    private IdentityHashMap<Order, Long> pendingResidentOffsets;
+    // Per-status order slots (history slot k, then resident orders[i] at historySlots + i), kept current by
+    // setStatus/addOrder/markOrderDirty; null = rebuilt on the next read (after loading or a list rebuild)
+    private BitSet[] statusSlots;
+    private IdentityHashMap<Order, Integer> residentSlots = new IdentityHashMap<Order, Integer>();   // resident order -> index in orders[]
+    private final Object statusLock = new Object();   // engine workers change statuses concurrently
+    private LinkedHashMap<Integer, Order[]> historyPages = new LinkedHashMap<Integer, Order[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Order[]> eldest) {
+            return size() > HISTORY_CACHED_PAGES;
+        }
+    };
+
+    private LoginAudit loginAudit;            // buffered login_audit.txt writer (see loginAudit())
+    private InvoiceLedger invoices;           // buffered invoices.txt writer with its ID index (see invoices())
+    private StepLedger orderSteps;            // finished processing steps per order (see orderSteps())
+    private static final String STEPS_MARK_FILE = "products.steps";   // order_steps.txt bytes whose stock products.txt includes
+    private long stepsCovered = -1;           // that offset for the current products.txt (-1 = not read yet)
+    private long productsBytes = -1;          // size and CRC32 of the products.txt stepsCovered belongs to
+    private long productsCrc = 0;
+    private long[] pendingStepsMark;          // covered, bytes, crc of a products.txt written but not yet committed
+
     public DataPersistence(String baseDir) {
         this.baseDir = (baseDir == null ? "" : baseDir);
     }
@@ -62,6 +138,32 @@ private String normalizeOrderIdForUI(String id) {
 
     /** Load all data from files: products, orders, admins */
     public void loadAll() throws Exception {
+        trackChanges = false;
+        clearDirtyFlags();
+        try {
+            loadAllFromDisk();
+        } finally {
+            trackChanges = true;
+            // a file that does not exist yet (first run) has to be written by the next save
+            if (!new java.io.File(path("products.txt")).exists()) productsDirty = true;
+            if (!new java.io.File(path("orders.txt")).exists()) ordersDirty = true;
+            if (!new java.io.File(path("admins.txt")).exists()) adminsDirty = true;
+        }
+    }
+
+    private void loadAllFromDisk() throws Exception {
+        // Fast path: binary snapshot taken from exactly the current .txt files
+        snapshotCurrent = false;
+        if (snapshotEnabled && !tieredHistory && loadSnapshot()) {
+            snapshotCurrent = true;
+            replayOrderJournal();
+            computeNextOrderNumber();
+            return;
+        }
+        if (parallelStartup && !tieredHistory) {
+            loadAllParallel();
+            return;
+        }
         loadProducts();
         loadOrders();
         loadAdmins();
@@ -69,32 +171,82 @@ private String normalizeOrderIdForUI(String id) {
         computeNextOrderNumber();
     }
 
+    /** Same result as the sequential loadAll, but admins and products load concurrently
+     *  while orders.txt is parsed in byte-range chunks on a fork-join pool. */
+    private void loadAllParallel() throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Future<Object> adminsDone = pool.submit(() -> { loadAdmins(); return null; });
+            Future<Object> productsDone = pool.submit(() -> { loadProducts(); return null; });
+
+            // Orders: one task per chunk; totals are fixed later because products may not be loaded yet
+            List<Future<List<Order>>> chunks = new ArrayList<Future<List<Order>>>();
+            String ordersPath = path("orders.txt");
+            long size = new java.io.File(ordersPath).length();
+            int chunkCount = (int) Math.max(1, Math.min(threads * 4L, size / MIN_ORDER_CHUNK));
+            for (int c = 0; c < chunkCount; c++) {
+                final long from = size * c / chunkCount;
+                final long to = (c == chunkCount - 1 ? Long.MAX_VALUE : size * (c + 1) / chunkCount);
+                chunks.add(pool.submit((Callable<List<Order>>) () -> parseOrderChunk(ordersPath, from, to)));
+            }
+
+            // The zero-total recompute needs the product index, so wait for products first
+            await(productsDone);
+            clearOrders();
+            for (int c = 0; c < chunks.size(); c++) {
+                List<Order> part = await(chunks.get(c));   // chunks are appended in file order
+                for (int i = 0; i < part.size(); i++) {
+                    Order o = part.get(i);
+                    fillMissingTotal(o);
+                    addOrder(o);
+                }
+            }
+            replayOrderJournal();
+            await(adminsDone);
+        } finally {
+            pool.shutdown();
+        }
+        // Compute initial next order number based on loaded orders
+        computeNextOrderNumber();
+    }
+
+    private List<Order> parseOrderChunk(String ordersPath, long from, long to) throws Exception {
+        List<Order> out = new ArrayList<Order>();
+        try {
+            MappedRecordReader.scan(ordersPath, from, to, r -> {
+                Order o = buildOrder(r, 0, false);
+                if (o != null) out.add(o);
+            });
+        } catch (java.io.FileNotFoundException e) {
+            // If orders.txt doesn't exist, it's fine
+        }
+        return out;
+    }
+
+    /** Future.get() that rethrows the task's own exception */
+    private static <T> T await(Future<T> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
     private void loadProducts() throws Exception {
+        for (int i = 0; i < productCount; i++) products[i] = null;
         productCount = 0;
-        BufferedReader br = null;
+        productIndex.clear();
         try {
-            br = new BufferedReader(new FileReader(path("products.txt")));
-            String line;
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.length() == 0) continue;
-                // Format: ProductID|Category|Brand|Name|Price|Stock
-                String[] parts = line.split("\\|");
-                if (parts.length < 6) continue;
-                String pid = parts[0].trim();
-                String category = parts[1].trim();
-                String brand = parts[2].trim();
-                String name = parts[3].trim();
-                String priceStr = parts[4].trim().replace(",", "");
-                String stockStr = parts[5].trim();
-                int price = toInt(priceStr);
-                int stock = toInt(stockStr);
-                products[productCount++] = new Product(pid, category, brand, name, price, stock);
-            }
+            // Format: ProductID|Category|Brand|Name|Price|Stock (fields scanned in place, no split)
+            MappedRecordReader.scan(path("products.txt"), r -> {
+                if (r.fieldCount() < 6) return;
+                addProduct(new Product(r.text(0), r.text(1), r.text(2), r.text(3), r.intValue(4), r.intValue(5)));
+            });
         } catch (Exception e) {
             // If file not found or format error, skip (will use defaults if any)
-        } finally {
-            if (br != null) br.close();
         }
     }
 
@@ -105,14 +257,12 @@ private String normalizeOrderIdForUI(String id) {
     // remove leading 'O' if present
     if (raw.startsWith("O")) raw = raw.substring(1);
 
-    // keep only digits
-    String digits = "";
+    // keep only digits (accumulated straight into the number, no temp strings)
+    int num = 0;
     for (int i = 0; i < raw.length(); i++) {
         char c = raw.charAt(i);
-        if (c >= '0' && c <= '9') digits += c;
+        if (c >= '0' && c <= '9') num = num * 10 + (c - '0');
     }
-
-    int num = toInt(digits);
     if (num <= 0) return "";
 
     // pad to 4 digits: 1019 -> 1019, 19 -> 0019
@@ -124,77 +274,87 @@ private String normalizeOrderIdForUI(String id) {
 
 
 private void loadOrders() throws Exception {
-    orderCount = 0;
-    BufferedReader br = null;
+    clearOrders();
 
     try {
-        br = new BufferedReader(new FileReader(path("orders.txt")));
-        String line;
+        // Fields are scanned in place from the mapped file (no readLine/split/trim per field)
+        MappedRecordReader.scan(path("orders.txt"), r -> {
+            if (tieredHistory && r.fieldCount() >= 5) {
+                OrderStatus st = OrderStatus.parse(r.text(4));
+                if (st != null && st.isFinal()) {
+                    addHistorySlot(normalizeOrderId(r.text(0)), st, r.lineOffset());
+                    return;
+                }
+            }
+            Order o = buildOrder(r, 0, true);
+            if (o != null) {
+                addOrder(o);
+                if (tieredHistory) residentOffsets.put(o, r.lineOffset());
+            }
+        });
+    } catch (Exception e) {
+        // If orders.txt doesn't exist, it's fine
+    }
 
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.length() == 0) continue;
+    // Apply mutations recorded since the last compaction on top of the base file
+    replayOrderJournal();
+}
 
-            // Format:
-            // OrderID|Date|Address|PaymentMode|Status|Total|ItemList|CancelReason|TrackingId(optional)
-            String[] parts = line.split("\\|");
-            if (parts.length < 5) continue;
+/** Build an Order from the current row, whose orders.txt record starts at field `first`.
+ *  fixTotals=false skips the zero-total recompute (caller runs fillMissingTotal once products are loaded).
+ *  Returns null for short rows; an empty or unknown status loads as PENDING (with a warning). */
+private Order buildOrder(MappedRecordReader r, int first, boolean fixTotals) {
+    // Format:
+    // OrderID|Date|Address|PaymentMode|Status|Total|ItemList|CancelReason|TrackingId(optional)
+    int n = r.fieldCount() - first;
+    if (n < 5) return null;
 
-            Order o = new Order();
+    Order o = new Order();
 
-            // ✅ IMPORTANT: normalize to STORAGE format (keep O + 4 digits)
-            o.orderId = normalizeOrderId(parts[0].trim());
+    // ✅ IMPORTANT: normalize to STORAGE format (keep O + 4 digits)
+    o.orderId = normalizeOrderId(r.text(first));
 
-            o.date = (parts.length > 1 ? parts[1].trim() : "");
-            o.address = (parts.length > 2 ? parts[2].trim() : "");
-            o.paymentMode = (parts.length > 3 ? parts[3].trim() : "");
-            o.status = (parts.length > 4 ? parts[4].trim() : "PENDING");
+    o.date = r.text(first + 1);
+    o.address = r.text(first + 2);
+    o.paymentMode = r.text(first + 3);
+    o.status = storedStatus(r.text(first + 4), o.orderId);   // accepts the stored text values in any case
 
-            // Items list (index 6)
-            String itemsPart = "";
-            if (parts.length > 6) {
-                itemsPart = parts[6].trim();
-                parseItemsIntoOrder(o, itemsPart);
-            }
+    // Items list (index 6)
+    if (n > 6) {
+        r.itemsInto(first + 6, o);
+    }
 
-            // Total amount (index 5)
-            if (parts.length > 5) {
-                o.totalAmount = toInt(parts[5].trim());
-            } else {
-                o.totalAmount = 0;
-            }
+    // Total amount (index 5)
+    o.totalAmount = (n > 5 ? r.intValue(first + 5) : 0);
 
-            // ✅ FIX: if total is 0 but items exist → recalculate from products
-            if (o.totalAmount <= 0 && o.itemCount > 0) {
-                int total = 0;
-                for (int i = 0; i < o.itemCount; i++) {
-                    Item it = o.items[i];
-                    if (it == null) continue;
-                    Product p = findProductById(it.productId);
-                    if (p != null) {
-                        total += p.price * it.quantity;
-                    }
-                }
-                o.totalAmount = total;
-            }
+    if (fixTotals) fillMissingTotal(o);
 
-            // Cancel reason (index 7)
-            if (parts.length > 7) {
-                o.cancelReason = parts[7].trim();
-            }
+    // Cancel reason (index 7)
+    if (n > 7) {
+        o.cancelReason = r.text(first + 7);
+    }
 
-            // Tracking ID (index 8)
-            if (parts.length > 8) {
-                o.trackingId = parts[8].trim();
-            }
+    // Tracking ID (index 8)
+    if (n > 8) {
+        o.trackingId = r.text(first + 8);
+    }
 
-            orders[orderCount++] = o;
-        }
+    return o;
+}
 
-    } catch (Exception e) {
-        // If orders.txt doesn't exist, it's fine
-    } finally {
-        if (br != null) br.close();
+/** ✅ FIX: if total is 0 but items exist → recalculate from products */
+private void fillMissingTotal(Order o) {
+    if (o.totalAmount <= 0 && o.itemCount > 0) {
+        int total = 0;
+        for (int i = 0; i < o.itemCount; i++) {
+            Item it = o.items[i];
+            if (it == null) continue;
+            Product p = findProductById(it.productId);
+            if (p != null) {
+                total += p.price * it.quantity;
+            }
+        }
+        o.totalAmount = total;
     }
 }
 
@@ -202,6 +362,7 @@ private void loadOrders() throws Exception {
 
 private void loadAdmins() throws Exception {
     adminCount = 0;
+    adminIndex.clear();
     BufferedReader br = null;
 
     try {
@@ -229,7 +390,7 @@ private void loadAdmins() throws Exception {
             }
 
             Admin a = new Admin(username, passHash, role);
-            admins[adminCount++] = a;
+            addAdmin(a);
         }
     } catch (Exception e) {
         // It's okay if file doesn't exist yet.
@@ -237,6 +398,11 @@ private void loadAdmins() throws Exception {
         if (br != null) br.close();
     }
 
+    finishAdminLoad();
+}
+
+/** Print loaded admins and fall back to the default admin if none exist */
+private void finishAdminLoad() {
     // Debug print AFTER loading
     for (int i = 0; i < adminCount; i++) {
         if (admins[i] != null) {
@@ -248,86 +414,528 @@ private void loadAdmins() throws Exception {
     if (adminCount == 0) {
         String defaultUser = "admin";
         String defaultPassHash = Admin.hashPassword("admin123");
-        admins[adminCount++] = new Admin(defaultUser, defaultPassHash, Role.ADMIN);
+        addAdmin(new Admin(defaultUser, defaultPassHash, Role.ADMIN));
+        adminsDirty = true;    // make sure the default admin reaches admins.txt
     }
 }
 
 
 
-    /** Save all data back to text files */
+    /** Save everything that changed since the last flush (plus the binary snapshot used for fast startup).
+     *  Only dirty files are rewritten; they go to temp files, are synced together once and then renamed
+     *  into place. Changed orders are appended to the order journal instead of rewriting orders.txt.
+     *  lastFlushCount is set to the number of records written. */
     public void saveAll() throws Exception {
-        saveProducts();
-        saveOrders();
-        saveAdmins();
+        int flushed = 0;
+        boolean rewriteOrders = ordersDirty || (!journalEnabled && !dirtyOrders.isEmpty());
+
+        if (productsDirty || rewriteOrders || adminsDirty) {
+            AtomicSaveGroup group = new AtomicSaveGroup();
+            try {
+                if (productsDirty) {
+                    writeProducts(group);
+                    flushed += productCount;
+                }
+                if (rewriteOrders) {
+                    writeOrders(group.openWriter(path("orders.txt")));
+                    flushed += orderCount;
+                }
+                if (adminsDirty) {
+                    writeAdmins(group.openWriter(path("admins.txt")));
+                    flushed += adminCount;
+                }
+                group.commit();
+            } catch (Exception e) {
+                group.abort();
+                pendingStepsMark = null;
+                throw e;
+            }
+            applyStepsMark();
+            productsDirty = false;
+            adminsDirty = false;
+            snapshotCurrent = false;
+            if (rewriteOrders) {
+                applyPendingOrderLayout();
+                ordersDirty = false;
+                dirtyOrders.clear();
+                discardOrderJournal();   // orders.txt is current again
+            }
+        }
+
+        if (!dirtyOrders.isEmpty()) {
+            // one journal append for all changed orders
+            ArrayList<String> records = new ArrayList<String>(dirtyOrders.size());
+            for (Order o : dirtyOrders) records.add("U|" + formatOrderLine(o));
+            dirtyOrders.clear();
+            appendJournal(records);
+            flushed += records.size();
+        }
+
+        lastFlushCount = flushed;
+        if (snapshotEnabled && !tieredHistory && !snapshotCurrent) saveSnapshot();   // snapshot holds every order
+    }
+
+    // =====================================================
+    // DIRTY TRACKING
+    // =====================================================
+    // add/remove/replace methods mark what they touch; code that edits a Product/Order/Admin
+    // object in place calls the matching mark method (or saves that file itself).
+
+    public void markProductsDirty() {
+        if (trackChanges) productsDirty = true;
+    }
+
+    public void markAdminsDirty() {
+        if (trackChanges) adminsDirty = true;
+    }
+
+    /** An order held in memory was changed (or added); the next saveAll journals just this record */
+    public void markOrderDirty(Order o) {
+        syncStatusSlot(o);   // its status may have been assigned directly
+        if (!trackChanges || o == null) return;
+        if (findOrderById(o.orderId) != o) return;   // not (yet) part of the order list; addOrder marks it
+        if (orderIndex.get(orderKey(o.orderId)) != o) promoteHistory(o);   // edited history order becomes resident
+        dirtyOrders.add(o);
+    }
+
+    /** The order list itself changed (orders removed/replaced); the next saveAll rewrites orders.txt */
+    public void markOrdersDirty() {
+        if (trackChanges) ordersDirty = true;
+    }
+
+    /** True if something changed that saveAll has not written yet */
+    public boolean hasUnsavedChanges() {
+        return productsDirty || adminsDirty || ordersDirty || !dirtyOrders.isEmpty();
+    }
+
+    /** Number of orders waiting to be journaled by the next saveAll */
+    public int dirtyOrderCount() {
+        return dirtyOrders.size();
+    }
+
+    private void clearDirtyFlags() {
+        productsDirty = false;
+        adminsDirty = false;
+        ordersDirty = false;
+        dirtyOrders.clear();
+    }
+
+    // =====================================================
+    // BINARY SNAPSHOT (snapshot.bin)
+    // =====================================================
+    // Sections: source file stamps, products, orders, admins (see BinarySnapshot for the encoding).
+    // The .txt files stay the import/export format; editing any of them makes the snapshot stale.
+
+    /** Write snapshot.bin from memory. Must run after the .txt files were saved (their stamps are recorded). */
+    public void saveSnapshot() throws Exception {
+        AtomicSaveGroup group = new AtomicSaveGroup();
+        BinarySnapshot.Writer out = new BinarySnapshot.Writer(group.openStream(path(SNAPSHOT_FILE)));
+        try {
+            for (int i = 0; i < SNAPSHOT_SOURCES.length; i++) {
+                java.io.File f = new java.io.File(path(SNAPSHOT_SOURCES[i]));
+                out.writeVarint(f.length());
+                out.writeVarint(f.lastModified());
+            }
+
+            out.writeVarint(productCount);
+            for (int i = 0; i < productCount; i++) {
+                Product p = products[i];
+                out.writeString(p.productId);
+                out.writeDict(p.category);
+                out.writeDict(p.brand);
+                out.writeString(p.name);
+                out.writeInt(p.price);
+                out.writeInt(p.stock);
+            }
+
+            out.writeVarint(orderCount);
+            for (int i = 0; i < orderCount; i++) {
+                Order o = orders[i];
+                out.writeString(o.orderId);
+                out.writeDict(o.date);
+                out.writeDict(o.address);
+                out.writeDict(o.paymentMode);
+                out.writeDict(o.status.name());
+                out.writeInt(o.totalAmount);
+                out.writeVarint(o.itemCount);
+                for (int j = 0; j < o.itemCount; j++) {
+                    out.writeDict(o.items[j].productId);
+                    out.writeInt(o.items[j].quantity);
+                }
+                out.writeDict(o.cancelReason);
+                out.writeString(o.trackingId);
+            }
+
+            out.writeVarint(adminCount);
+            for (int i = 0; i < adminCount; i++) {
+                Admin a = admins[i];
+                out.writeString(a.username);
+                out.writeString(a.passHash);
+                out.writeDict(a.role.name());
+            }
+            out.finish();
+            group.commit();
+        } catch (Exception e) {
+            group.abort();
+            throw e;
+        }
+        snapshotCurrent = true;
+    }
+
+    /** Load products, orders and admins from snapshot.bin. Returns false (memory state undefined,
+     *  caller reloads from text) if the snapshot is missing, stale, corrupt or truncated. */
+    private boolean loadSnapshot() {
+        java.io.File snap = new java.io.File(path(SNAPSHOT_FILE));
+        if (!snap.exists()) return false;
+
+        BinarySnapshot.Reader in = null;
+        try {
+            in = new BinarySnapshot.Reader(snap.getPath());
+
+            // Only valid for exactly the .txt files it was written after
+            for (int i = 0; i < SNAPSHOT_SOURCES.length; i++) {
+                java.io.File f = new java.io.File(path(SNAPSHOT_SOURCES[i]));
+                long len = in.readVarint();
+                long modified = in.readVarint();
+                if (len != f.length() || modified != f.lastModified()) return false;
+            }
+
+            for (int i = 0; i < productCount; i++) products[i] = null;
+            productCount = 0;
+            productIndex.clear();
+            long n = in.readVarint();
+            for (long k = 0; k < n; k++) {
+                String pid = in.readString();
+                String category = in.readDict();
+                String brand = in.readDict();
+                String name = in.readString();
+                int price = in.readInt();
+                int stock = in.readInt();
+                addProduct(new Product(pid, category, brand, name, price, stock));
+            }
+
+            clearOrders();
+            n = in.readVarint();
+            for (long k = 0; k < n; k++) {
+                Order o = new Order();
+                o.orderId = normalizeOrderId(in.readString());   // same canonical ID as the text loader
+                o.date = in.readDict();
+                o.address = in.readDict();
+                o.paymentMode = in.readDict();
+                o.status = OrderStatus.valueOf(in.readDict());
+                o.totalAmount = in.readInt();
+                long items = in.readVarint();
+                for (long j = 0; j < items; j++) {
+                    String pid = in.readDict();
+                    o.addItem(new Item(pid, in.readInt()));
+                }
+                o.cancelReason = in.readDict();
+                o.trackingId = in.readString();
+                addOrder(o);
+            }
+
+            adminCount = 0;
+            adminIndex.clear();
+            n = in.readVarint();
+            for (long k = 0; k < n; k++) {
+                String username = in.readString();
+                String passHash = in.readString();
+                Role role;
+                try {
+                    role = Role.valueOf(in.readDict());
+                } catch (IllegalArgumentException ex) {
+                    role = Role.ADMIN;
+                }
+                addAdmin(new Admin(username, passHash, role));
+            }
+
+            if (!in.finish()) return false;   // truncated write
+            finishAdminLoad();
+            return true;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            if (in != null) in.close();
+        }
     }
 
     public void saveProducts() throws Exception {
-        FileWriter fw = new FileWriter(path("products.txt"), false);  // overwrite file
+        AtomicSaveGroup group = new AtomicSaveGroup();
+        try {
+            writeProducts(group);  // temp files, renamed over products.steps and products.txt
+            group.commit();
+        } catch (Exception e) {
+            group.abort();
+            pendingStepsMark = null;
+            throw e;
+        }
+        applyStepsMark();
+        productsDirty = false;
+        snapshotCurrent = false;
+    }
+
+    /** Add products.txt (and, once order steps are in use, products.steps) to the save group.
+     *  products.steps is opened first, so it is renamed before products.txt: if a crash falls between the
+     *  two renames, readStepsMark sees the old products.txt and falls back to the previous offset. */
+    private void writeProducts(AtomicSaveGroup group) throws Exception {
+        long previous = productsStepMark();
+        Writer mark = (orderSteps != null || previous > 0 ? group.openWriter(path(STEPS_MARK_FILE)) : null);
+        Writer w = group.openWriter(path("products.txt"));
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        long bytes = 0;
         for (int i = 0; i < productCount; i++) {
             Product p = products[i];
             if (p == null) continue;
             // Format: ProductID|Category|Brand|Name|Price|Stock
-            fw.write(p.productId + "|" + p.category + "|" + p.brand + "|" + p.name + "|" + p.price + "|" + p.stock + "\n");
+            String line = p.productId + "|" + p.category + "|" + p.brand + "|" + p.name + "|" + p.price + "|" + p.stock + "\n";
+            byte[] b = line.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            crc.update(b, 0, b.length);
+            bytes += b.length;
+            w.write(line);
+        }
+        // the order steps whose stock this file includes (synced before the group is committed)
+        long covered = (orderSteps != null ? orderSteps.syncedBytes() : previous);
+        if (mark != null) {
+            // Format: covered|bytes|crc (this products.txt)|covered|bytes|crc (the one it replaces)
+            mark.write(covered + "|" + bytes + "|" + crc.getValue() + "|" + previous + "|" + productsBytes + "|" + productsCrc + "\n");
         }
-        fw.close();
+        pendingStepsMark = new long[] { covered, bytes, crc.getValue() };
+    }
+
+    /** products.txt was committed: its step offset and identity become current */
+    private void applyStepsMark() {
+        if (pendingStepsMark == null) return;
+        stepsCovered = pendingStepsMark[0];
+        productsBytes = pendingStepsMark[1];
+        productsCrc = pendingStepsMark[2];
+        pendingStepsMark = null;
     }
 public void addAdmin(Admin newAdmin) {
-    if (adminCount < admins.length) {
-        admins[adminCount++] = newAdmin;  // Add new admin to the list
-    } else {
-        System.out.println(ROSE+"Unable to add new admin. Admin list is full."+RESET);
+    if (newAdmin == null) return;
+    if (adminCount >= admins.length) {
+        admins = Arrays.copyOf(admins, admins.length * 2);
     }
+    admins[adminCount++] = newAdmin;  // Add new admin to the list
+    if (newAdmin.username != null) adminIndex.putIfAbsent(newAdmin.username, newAdmin);
+    markAdminsDirty();
+}
+
+/** Find an admin by exact username (O(1) through the admin index). Returns null if not found. */
+public Admin findAdmin(String username) {
+    if (username == null) return null;
+    return adminIndex.get(username);
 }
 
    public void saveOrders() throws Exception {
-    // Open the file for writing (overwrite the file)
-    FileWriter fw = new FileWriter(path("orders.txt"), false);  // 'false' to overwrite
+    // Write a temp file and rename it over orders.txt (a crash never leaves a half-written file)
+    AtomicSaveGroup group = new AtomicSaveGroup();
+    try {
+        writeOrders(group.openWriter(path("orders.txt")));
+        group.commit();
+    } catch (Exception e) {
+        group.abort();
+        throw e;
+    }
+    applyPendingOrderLayout();
+    ordersDirty = false;
+    dirtyOrders.clear();
+    snapshotCurrent = false;
 
+    // orders.txt now holds everything, so the journal is folded in
+    discardOrderJournal();
+}
+
+private void writeOrders(Writer w) throws Exception {
+    if (historySlots > 0) {
+        writeOrdersTiered(w);
+        return;
+    }
     // Iterate through all orders and write them to the file
     for (int i = 0; i < orderCount; i++) {
         Order o = orders[i];
         if (o == null) continue;  // Skip null orders
+        w.write(formatOrderLine(o));
+        w.write("\n");
+    }
+}
 
-        // Format and write each order as: OrderID|Date|Address|PaymentMode|Status|ItemList|TotalAmount|CancelReason
-        fw.write(o.orderId + "|" + o.date + "|" + o.address + "|" + o.paymentMode + "|" 
-                 + o.status + "|" + o.totalAmount);  // Write order basic details
-
-        // Prepare the item list in the format "ProductIDxQuantity, ProductIDxQuantity, ..."
-        StringBuilder itemList = new StringBuilder();
-        for (int j = 0; j < o.itemCount; j++) {
-            Item item = o.items[j];
-            if (item != null) {
-                itemList.append(item.productId).append("x").append(item.quantity);
-                if (j < o.itemCount - 1) {
-                    itemList.append(",");  // Add comma between items
-                }
+/** Format an order as one orders.txt record:
+ *  OrderID|Date|Address|PaymentMode|Status|TotalAmount|ItemList[|CancelReason[|TrackingId]] */
+private String formatOrderLine(Order o) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(o.orderId).append("|").append(o.date).append("|").append(o.address).append("|")
+      .append(o.paymentMode).append("|").append(o.status).append("|").append(o.totalAmount);
+
+    // Prepare the item list in the format "ProductIDxQuantity, ProductIDxQuantity, ..."
+    sb.append("|");
+    for (int j = 0; j < o.itemCount; j++) {
+        Item item = o.items[j];
+        if (item != null) {
+            sb.append(item.productId).append("x").append(item.quantity);
+            if (j < o.itemCount - 1) {
+                sb.append(",");  // Add comma between items
             }
         }
+    }
 
-        // Write item list to the order record
-        fw.write("|" + itemList.toString());
+    boolean hasReason = (o.cancelReason != null && !o.cancelReason.isEmpty());
+    boolean hasTracking = (o.trackingId != null && !o.trackingId.isEmpty());
 
-        // If the order was canceled, write the cancel reason
-        if (o.cancelReason != null && !o.cancelReason.isEmpty()) {
-            fw.write("|" + o.cancelReason);  // Add cancellation reason if present
+    // If the order was canceled, write the cancel reason (kept as an empty slot when only tracking follows)
+    if (hasReason || hasTracking) {
+        sb.append("|").append(hasReason ? o.cancelReason : "");
+    }
+    if (hasTracking) {
+        sb.append("|").append(o.trackingId);
+    }
+    return sb.toString();
+}
+
+    // =====================================================
+    // ORDER JOURNAL (append-only mutations on top of orders.txt)
+    // =====================================================
+    // Record format, one per line:
+    //   U|<orders.txt record>   insert or replace the order with that ID
+    //   D|<OrderID>             remove the order with that ID
+
+    /** Persist a single order change. In journal mode this appends one record;
+     *  otherwise (or when the journal has grown too long) orders.txt is rewritten. */
+    public void persistOrder(Order o) throws Exception {
+        if (o == null) return;
+        if (!journalEnabled) {
+            saveOrders();
+            return;
         }
+        dirtyOrders.remove(o);
+        appendJournal("U|" + formatOrderLine(o));
+    }
 
-        // End the order record with a new line
-        fw.write("\n");
+    /** Persist the removal of a single order (journal mode), or rewrite orders.txt */
+    public void persistOrderRemoval(String orderId) throws Exception {
+        if (!journalEnabled) {
+            saveOrders();
+            return;
+        }
+        appendJournal("D|" + orderKey(orderId));
     }
 
-    // Close the FileWriter after writing all orders
-    fw.close();
-}
+    /** Fold the journal back into orders.txt (rewrites the base file, then drops the journal) */
+    public void compactOrderJournal() throws Exception {
+        saveOrders();
+    }
+
+    /** Forget journal records without applying them (used when orders.txt is replaced wholesale) */
+    public void discardOrderJournal() {
+        java.io.File f = new java.io.File(path(JOURNAL_FILE));
+        if (f.exists()) f.delete();
+        journalRecords = 0;
+    }
+
+    private void appendJournal(String record) throws Exception {
+        ArrayList<String> records = new ArrayList<String>(1);
+        records.add(record);
+        appendJournal(records);
+    }
+
+    /** Append several records with one open/write/close of the journal */
+    private void appendJournal(List<String> records) throws Exception {
+        FileWriter fw = new FileWriter(path(JOURNAL_FILE), true);
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < records.size(); i++) sb.append(records.get(i)).append('\n');
+            fw.write(sb.toString());
+        } finally {
+            fw.close();
+        }
+        journalRecords += records.size();
+        if (journalRecords >= JOURNAL_COMPACT_THRESHOLD) {
+            compactOrderJournal();
+        }
+    }
+
+    /** Re-apply journal records (in order) to the orders loaded from orders.txt */
+    private void replayOrderJournal() throws Exception {
+        journalRecords = 0;
+        try {
+            MappedRecordReader.scan(path(JOURNAL_FILE), r -> {
+                String kind = r.text(0);
+                if (kind.equals("U")) {
+                    Order o = buildOrder(r, 1, true);
+                    if (o == null) return;
+                    Order existing = orderIndex.get(orderKey(o.orderId));
+                    if (existing != null) {
+                        copyOrder(o, existing);
+                    } else {
+                        long offset = supersedeHistory(orderKey(o.orderId));   // newer than the orders.txt row
+                        addOrder(o);
+                        if (offset >= 0) residentOffsets.put(o, offset);
+                    }
+                    journalRecords++;
+                } else if (kind.equals("D")) {
+                    if (removeOrder(r.text(1)) == null) supersedeHistory(orderKey(r.text(1)));
+                    journalRecords++;
+                }
+            });
+        } catch (java.io.FileNotFoundException e) {
+            // no journal yet
+        }
+    }
+
+    /** Overwrite every field of target with src (keeps the same Order object in memory) */
+    private void copyOrder(Order src, Order target) {
+        target.date = src.date;
+        target.address = src.address;
+        target.paymentMode = src.paymentMode;
+        fileStatus(target, src.status);
+        target.items = src.items;
+        target.itemCount = src.itemCount;
+        target.totalAmount = src.totalAmount;
+        target.cancelReason = src.cancelReason;
+        target.trackingId = src.trackingId;
+    }
+
+    /** Remove an order by ID from memory and the index. Returns the removed order or null. */
+    public Order removeOrder(String orderId) {
+        Order target = findOrderById(orderId);
+        if (target == null) return null;
+        int idx = -1;
+        for (int i = 0; i < orderCount; i++) {
+            if (orders[i] == target) {
+                idx = i;
+                break;
+            }
+        }
+        if (idx == -1) return null;
+        for (int j = idx; j < orderCount - 1; j++) {
+            orders[j] = orders[j + 1];
+        }
+        orders[orderCount - 1] = null;
+        orderCount--;
+        rebuildOrderIndex();
+        dirtyOrders.remove(target);
+        markOrdersDirty();
+        return target;
+    }
 
     private void saveAdmins() throws Exception {
-        FileWriter fw = new FileWriter(path("admins.txt"), false);
+        AtomicSaveGroup group = new AtomicSaveGroup();
+        try {
+            writeAdmins(group.openWriter(path("admins.txt")));
+            group.commit();
+        } catch (Exception e) {
+            group.abort();
+            throw e;
+        }
+        adminsDirty = false;
+        snapshotCurrent = false;
+    }
+
+    private void writeAdmins(Writer w) throws Exception {
         for (int i = 0; i < adminCount; i++) {
             Admin a = admins[i];
             if (a == null) continue;
-            fw.write(a.username + "|" + a.passHash +"|"+a.role.name()+ "\n");
+            w.write(a.username + "|" + a.passHash +"|"+a.role.name()+ "\n");
         }
-        fw.close();
     }
 
     /** Convert a string to integer without using library parse methods */
@@ -371,35 +979,36 @@ public int computeOrderTotal(Order o) {
 
 
 
-    /** Determine nextOrderNumber by finding the max numeric part of loaded order IDs */
+    /** Determine nextOrderNumber by finding the max numeric part of loaded order IDs
+     *  (resident orders and, in tiered mode, the on-disk history rows too) */
     private void computeNextOrderNumber() {
     int maxNum = 0;
 
     for (int i = 0; i < orderCount; i++) {
         Order o = orders[i];
         if (o == null || o.orderId == null) continue;
-
-        String id = o.orderId;
-
-        // extract numeric part from ID (works for O1019, 01019, 1019)
-        String numPart = "";
-        for (int k = 0; k < id.length(); k++) {
-            char ch = id.charAt(k);
-            if (ch >= '0' && ch <= '9') {
-                numPart += ch;
-            }
-        }
-
-        int num = toInt(numPart);
-        if (num > maxNum) {
-            maxNum = num;
-        }
+        maxNum = Math.max(maxNum, orderNumber(o.orderId));
+    }
+    for (String key : historyIndex.keySet()) {
+        maxNum = Math.max(maxNum, orderNumber(key));
     }
 
     // ✅ set next order number AFTER loop
     nextOrderNumber = maxNum + 1;
 }
 
+/** Numeric part of an order ID (works for O1019, 01019, 1019) */
+private static int orderNumber(String id) {
+    int num = 0;
+    for (int k = 0; k < id.length(); k++) {
+        char ch = id.charAt(k);
+        if (ch >= '0' && ch <= '9') {
+            num = num * 10 + (ch - '0');
+        }
+    }
+    return num;
+}
+
 
     /** Generate a new unique Order ID (e.g., "O1001", "O1002", ...) */
    public String generateOrderId() {
@@ -456,98 +1065,707 @@ public void parseItemsIntoOrder(Order o, String itemsPart) {
 }
 
 
-    /** Find a Product by its ID (case-sensitive match). Returns null if not found. */
+    /** Find a Product by its ID (case-insensitive, O(1) through the catalog index). Returns null if not found. */
    public Product findProductById(String productId) {
     if (productId == null) return null;
-    String key = productId.trim();
+    return productIndex.get(productKey(productId));
+}
+
+/** Catalog index key: trimmed, upper-case Product ID ("m101 " -> "M101") */
+private static String productKey(String productId) {
+    return productId.trim().toUpperCase();
+}
+
+/** Add a product to the catalog (array grows as needed). If the ID is already
+ *  present the first product keeps the index, same as the old linear scan. */
+public void addProduct(Product p) {
+    if (p == null) return;
+    if (productCount >= products.length) {
+        products = Arrays.copyOf(products, products.length * 2);
+    }
+    products[productCount++] = p;
+    if (p.productId != null) {
+        productIndex.putIfAbsent(productKey(p.productId), p);
+    }
+    markProductsDirty();
+}
+
+/** Remove a product by ID (case-insensitive). Returns the removed product, or null if not found. */
+public Product removeProduct(String productId) {
+    Product target = findProductById(productId);
+    if (target == null) return null;
+
+    int idx = -1;
+    for (int i = 0; i < productCount; i++) {
+        if (products[i] == target) {
+            idx = i;
+            break;
+        }
+    }
+    if (idx == -1) return null;
+
+    // shift remaining products left to keep catalog order
+    for (int j = idx; j < productCount - 1; j++) {
+        products[j] = products[j + 1];
+    }
+    products[productCount - 1] = null;
+    productCount--;
+
+    // re-point the key at a duplicate row if one exists, otherwise drop it
+    String key = productKey(target.productId);
+    productIndex.remove(key);
     for (int i = 0; i < productCount; i++) {
         Product p = products[i];
-        if (p != null && p.productId != null && p.productId.trim().equalsIgnoreCase(key)) {
-            return p;
+        if (p != null && p.productId != null && productKey(p.productId).equals(key)) {
+            productIndex.put(key, p);
+            break;
         }
     }
-    return null;
+    markProductsDirty();
+    return target;
 }
 
 
 
-public void loadTestDataFromFile(String filename) {
-    int productLoaded = 0, adminLoaded = 0, orderLoaded = 0;
-    String mode = "";
+/** Canonical lookup key for an Order ID: "O1019", "01019", "o1019" and "1019" all map to "O1019".
+ *  Returns "" for IDs without a number (those orders are simply not indexed). */
+public String orderKey(String orderId) {
+    return normalizeOrderId(orderId);
+}
 
-    try (BufferedReader br = new BufferedReader(new FileReader(path(filename)))) {
-        String line;
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (line.equals("")) continue;
+/** Find an Order by its ID in O(1) via the order index (any ID spelling accepted). Returns null if not found. */
+public Order findOrderById(String orderId) {
+    String key = orderKey(orderId);
+    if (key.length() == 0) return null;
+    Order o = orderIndex.get(key);
+    if (o == null && historySlots > 0) {
+        Integer slot = historyIndex.get(key);   // not resident: maybe on-disk history
+        if (slot != null) o = historyOrder(slot);
+    }
+    return o;
+}
 
-            if (line.startsWith("#")) {
-                mode = line.trim().toUpperCase();
-                continue;
-            }
+/** Append an order (array grows as needed). The first order with a given key keeps the index. */
+public void addOrder(Order o) {
+    if (o == null) return;
+    if (orderCount >= orders.length) {
+        orders = Arrays.copyOf(orders, orders.length * 2);
+    }
+    orders[orderCount++] = o;
+    indexOrder(o);
+    synchronized (statusLock) {
+        residentSlots.put(o, orderCount - 1);
+        if (statusSlots != null) statusSlots[o.status.ordinal()].set(historySlots + orderCount - 1);
+    }
+    if (trackChanges) dirtyOrders.add(o);
+}
 
-            String[] parts = line.split("\\|");
+/** Replace the whole order list (e.g. after archiving) and rebuild the index */
+public void replaceOrders(Order[] list, int count) {
+    orders = (list == null ? new Order[200] : list);
+    orderCount = (list == null ? 0 : count);
+    rebuildOrderIndex();
+    clearHistory();   // callers pass the complete list (see materializeHistory)
+    markOrdersDirty();
+}
 
-            switch (mode) {
-                case "#PRODUCTS":
-                    if (parts.length == 6) {
-                        String pid = parts[0].trim();
-                        String cat = parts[1].trim();
-                        String brand = parts[2].trim();
-                        String name = parts[3].trim();
-                        int price = toInt(parts[4].trim());
-                        int stock = toInt(parts[5].trim());
-                        products[productCount++] = new Product(pid, cat, brand, name, price, stock);
-                        productLoaded++;
-                    }
-                    break;
-
-                case "#ADMINS":
-                    if (parts.length == 2) {
-                        String username = parts[0].trim();
-                        String passHash = parts[1].trim();
-                        admins[adminCount++] = new Admin(username, passHash);
-                        adminLoaded++;
-                    }
-                    break;
-
-                case "#ORDERS":
-                    if (parts.length >= 7) {
-                        Order o = new Order();
-                        o.orderId = parts[0].trim();
-                        o.date = parts[1].trim();
-                        o.address = parts[2].trim();
-                        o.paymentMode = parts[3].trim();
-                        o.status = parts[4].trim();
-                        parseItemsIntoOrder(o, parts[5].trim());
-                        o.totalAmount = toInt(parts[6].trim());
-                        if (parts.length >= 8) o.cancelReason = parts[7].trim();
-                        orders[orderCount++] = o;
-                        orderLoaded++;
-                    }
-                    break;
+/** Drop every order from memory (orders.txt is not touched) */
+public void clearOrders() {
+    for (int i = 0; i < orderCount; i++) orders[i] = null;
+    orderCount = 0;
+    orderIndex.clear();
+    dirtyOrders.clear();
+    clearHistory();
+    resetStatusSlots();
+    markOrdersDirty();
+}
+
+private void rebuildOrderIndex() {
+    orderIndex.clear();
+    for (int i = 0; i < orderCount; i++) {
+        indexOrder(orders[i]);
+    }
+    resetStatusSlots();
+}
+
+private void indexOrder(Order o) {
+    if (o == null || o.orderId == null) return;
+    String key = orderKey(o.orderId);
+    if (key.length() > 0) orderIndex.putIfAbsent(key, o);
+}
+
+// =====================================================
+// TIERED ORDER HISTORY (tieredHistory = true)
+// =====================================================
+// orders[] holds the active orders (PENDING .. OUT_FOR_DELIVERY). DELIVERED and CANCELLED rows are
+// only indexed at startup; findOrderById and historyOrder read them back in pages of HISTORY_PAGE_SIZE
+// rows (a few pages stay cached). Code that needs every order iterates the order slots
+// 0..orderSlotCount() with orderInSlot (history slots first, then orders[]), skipping nulls.
+
+private void addHistorySlot(String key, OrderStatus status, long offset) {
+    if (historySlots >= historyOffsets.length) {
+        historyOffsets = Arrays.copyOf(historyOffsets, historyOffsets.length * 2);
+        historyCancelled = Arrays.copyOf(historyCancelled, historyOffsets.length);
+    }
+    historyOffsets[historySlots] = offset;
+    historyCancelled[historySlots] = (status == OrderStatus.CANCELLED);
+    if (historyCancelled[historySlots]) historyCancelledCount++;
+    if (key.length() > 0) historyIndex.putIfAbsent(key, historySlots);
+    historySlots++;
+    historyLive++;
+    synchronized (statusLock) {
+        statusSlots = null;   // resident slot numbers moved up (only happens while loading)
+    }
+}
+
+/** Number of history slots (iterate 0..historySlotCount()-1 with historyOrder; superseded slots give null) */
+public int historySlotCount() {
+    return historySlots;
+}
+
+/** Orders kept on disk only (0 unless tieredHistory) */
+public int historyCount() {
+    return historyLive;
+}
+
+/** On-disk orders with the given status (DELIVERED or CANCELLED) */
+public int historyCount(OrderStatus status) {
+    if (status == OrderStatus.CANCELLED) return historyCancelledCount;
+    if (status == OrderStatus.DELIVERED) return historyLive - historyCancelledCount;
+    return 0;
+}
+
+/** Change an order's status and its status slot in one step (thread-safe; new orders not yet
+ *  added just get the field set). Callers still mark the order dirty.
+ *  Only moves in the OrderStatus transition table are accepted (setting the current status again is a no-op);
+ *  anything else throws IllegalStateException and leaves the order unchanged. */
+public void setStatus(Order o, OrderStatus status) {
+    synchronized (statusLock) {
+        if (o.status != null && o.status != status && !o.status.canMoveTo(status)) {
+            throw new IllegalStateException("Order " + o.orderId + " cannot move from " + o.status + " to " + status);
+        }
+        fileStatus(o, status);
+    }
+}
+
+/** Set the status without the transition check (replaying a stored record, which may be any status) */
+private void fileStatus(Order o, OrderStatus status) {
+    synchronized (statusLock) {
+        Integer i = residentSlots.get(o);
+        if (statusSlots != null && i != null && o.status != null) {
+            statusSlots[o.status.ordinal()].clear(historySlots + i);
+            statusSlots[status.ordinal()].set(historySlots + i);
+        }
+        o.status = status;
+    }
+}
+
+/** Re-file a resident order under its current status (after a direct assignment to o.status) */
+private void syncStatusSlot(Order o) {
+    if (o == null || o.status == null) return;
+    synchronized (statusLock) {
+        Integer i = residentSlots.get(o);
+        if (statusSlots == null || i == null) return;
+        for (int s = 0; s < statusSlots.length; s++) statusSlots[s].clear(historySlots + i);
+        statusSlots[o.status.ordinal()].set(historySlots + i);
+    }
+}
+
+/** orders[] was rebuilt or cleared: renumber the resident slots; the status sets are rebuilt on the next read */
+private void resetStatusSlots() {
+    synchronized (statusLock) {
+        residentSlots.clear();
+        for (int i = 0; i < orderCount; i++) {
+            if (orders[i] != null) residentSlots.put(orders[i], i);
+        }
+        statusSlots = null;
+    }
+}
+
+/** Number of order slots: on-disk history slots (tiered mode), then the resident orders */
+public int orderSlotCount() {
+    return historySlots + orderCount;
+}
+
+/** The order in a slot (history pages in from orders.txt on demand); null for superseded slots */
+public Order orderInSlot(int slot) {
+    if (slot < historySlots) return historyOrder(slot);
+    int i = slot - historySlots;
+    return i < orderCount ? orders[i] : null;
+}
+
+/** Per-status bitsets over every order slot (see orderSlotCount / orderInSlot). They are maintained as
+ *  statuses change, so this is a plain read; history slots are classified from the index, no page is read.
+ *  The sets are live: read them, don't modify them. Use slotsWithStatus for multi-status filters. */
+public BitSet[] statusBitsets() {
+    synchronized (statusLock) {
+        if (statusSlots == null) {
+            BitSet[] bits = new BitSet[OrderStatus.count()];
+            for (int s = 0; s < bits.length; s++) bits[s] = new BitSet();
+            for (int slot = 0; slot < historySlots; slot++) {
+                if (historyOffsets[slot] < 0) continue;
+                OrderStatus st = historyCancelled[slot] ? OrderStatus.CANCELLED : OrderStatus.DELIVERED;
+                bits[st.ordinal()].set(slot);
+            }
+            for (int i = 0; i < orderCount; i++) {
+                Order o = orders[i];
+                if (o != null) bits[o.status.ordinal()].set(historySlots + i);
             }
+            statusSlots = bits;
         }
+        return statusSlots;
+    }
+}
+
+/** Order slots whose status is in the mask (see OrderStatus.bit); a copy, safe to iterate while statuses change */
+public BitSet slotsWithStatus(int mask) {
+    synchronized (statusLock) {
+        BitSet[] bits = statusBitsets();
+        BitSet result = new BitSet();
+        for (int s = 0; s < bits.length; s++) {
+            if (OrderStatus.of(s).in(mask)) result.or(bits[s]);
+        }
+        return result;
+    }
+}
+
+/** History order in the given slot, loading its page from orders.txt if needed. Null if superseded. */
+public Order historyOrder(int slot) {
+    if (slot < 0 || slot >= historySlots || historyOffsets[slot] < 0) return null;
+    int page = slot / HISTORY_PAGE_SIZE;
+    Order[] rows = historyPages.get(page);
+    if (rows == null) {
+        try {
+            rows = loadHistoryPage(page);
+        } catch (Exception e) {
+            System.out.println(ROSE + "Failed to read order history: " + e.getMessage() + RESET);
+            return null;
+        }
+        historyPages.put(page, rows);
+    }
+    return rows[slot - page * HISTORY_PAGE_SIZE];
+}
+
+/** Read the rows of one page with a single mapped scan over the byte range they occupy */
+private Order[] loadHistoryPage(int page) throws Exception {
+    final int first = page * HISTORY_PAGE_SIZE;
+    final int last = Math.min(first + HISTORY_PAGE_SIZE, historySlots);
+    Order[] rows = new Order[last - first];
+
+    long from = -1;
+    for (int k = first; k < last && from < 0; k++) from = historyOffsets[k];
+    if (from < 0) return rows;   // every slot superseded
+    long to = Long.MAX_VALUE;
+    for (int k = last; k < historySlots; k++) {
+        if (historyOffsets[k] >= 0) {
+            to = historyOffsets[k];
+            break;
+        }
+    }
+
+    final int[] next = { first };
+    MappedRecordReader.scan(path("orders.txt"), from, to, r -> {
+        long off = r.lineOffset();
+        while (next[0] < last && historyOffsets[next[0]] < off) next[0]++;   // skips superseded (-1) slots too
+        if (next[0] < last && historyOffsets[next[0]] == off) {
+            rows[next[0] - first] = buildOrder(r, 0, true);
+            next[0]++;
+        }
+    });
+    return rows;
+}
+
+/** The orders.txt row of this key is replaced (journal U/D). Returns its offset, or -1 if not history. */
+private long supersedeHistory(String key) {
+    if (historySlots == 0 || key.length() == 0) return -1;
+    Integer slot = historyIndex.remove(key);
+    if (slot == null) return -1;
+    long offset = historyOffsets[slot];
+    dropHistorySlot(slot);
+    historyPages.remove(slot / HISTORY_PAGE_SIZE);
+    return offset;
+}
+
+private void dropHistorySlot(int slot) {
+    if (historyCancelled[slot]) historyCancelledCount--;
+    historyOffsets[slot] = -1;
+    historyLive--;
+    synchronized (statusLock) {
+        if (statusSlots != null) {
+            statusSlots[(historyCancelled[slot] ? OrderStatus.CANCELLED : OrderStatus.DELIVERED).ordinal()].clear(slot);
+        }
+    }
+}
+
+/** Move an edited history order into orders[] so it is saved like any active order */
+private void promoteHistory(Order o) {
+    String key = orderKey(o.orderId);
+    Integer slot = historyIndex.get(key);
+    if (slot == null) return;
+    long offset = historyOffsets[slot];
+    historyIndex.remove(key);
+    dropHistorySlot(slot);
+    addOrder(o);             // the cached page keeps the same object until evicted
+    residentOffsets.put(o, offset);
+}
+
+/** Load every history page into orders[] (file order kept) and leave tiered mode for this session.
+ *  Needed before operations that rebuild the whole order list (archive, delete all). */
+public void materializeHistory() {
+    if (historySlots == 0) return;
+    boolean wasTracking = trackChanges;
+    trackChanges = false;    // same orders, just resident now
+
+    // residents that came from orders.txt go back to their row position, new ones stay at the end
+    Order[] placed = new Order[orderCount];
+    int placedCount = 0;
+    Order[] unplaced = new Order[orderCount];
+    int unplacedCount = 0;
+    for (int i = 0; i < orderCount; i++) {
+        if (residentOffsets.containsKey(orders[i])) placed[placedCount++] = orders[i];
+        else unplaced[unplacedCount++] = orders[i];
+    }
+    Arrays.sort(placed, 0, placedCount, (a, b) -> Long.compare(residentOffsets.get(a), residentOffsets.get(b)));
+
+    Order[] merged = new Order[Math.max(200, orderCount + historyLive)];
+    int n = 0;
+    int p = 0;
+    for (int slot = 0; slot < historySlots; slot++) {
+        long off = historyOffsets[slot];
+        if (off < 0) continue;
+        while (p < placedCount && residentOffsets.get(placed[p]) < off) merged[n++] = placed[p++];
+        Order h = historyOrder(slot);
+        if (h != null) merged[n++] = h;
+    }
+    while (p < placedCount) merged[n++] = placed[p++];
+    for (int i = 0; i < unplacedCount; i++) merged[n++] = unplaced[i];
+
+    orders = merged;
+    orderCount = n;
+    rebuildOrderIndex();
+    clearHistory();
+    trackChanges = wasTracking;
+}
+
+private void clearHistory() {
+    synchronized (statusLock) {
+        statusSlots = null;   // resident slot numbers move down
+    }
+    historySlots = 0;
+    historyLive = 0;
+    historyCancelledCount = 0;
+    historyIndex.clear();
+    historyPages.clear();
+    residentOffsets.clear();
+}
+
+/** Rewrite orders.txt in tiered mode: history rows are copied from the current file as they are,
+ *  resident orders are written from memory at their old row position (new ones at the end).
+ *  The new row offsets take effect in applyPendingOrderLayout once the file is committed. */
+private void writeOrdersTiered(Writer w) throws Exception {
+    Order[] placed = new Order[orderCount];
+    int placedCount = 0;
+    Order[] unplaced = new Order[orderCount];
+    int unplacedCount = 0;
+    for (int i = 0; i < orderCount; i++) {
+        if (orders[i] == null) continue;
+        if (residentOffsets.containsKey(orders[i])) placed[placedCount++] = orders[i];
+        else unplaced[unplacedCount++] = orders[i];
+    }
+    Arrays.sort(placed, 0, placedCount, (a, b) -> Long.compare(residentOffsets.get(a), residentOffsets.get(b)));
+
+    final long[] newHistory = Arrays.copyOf(historyOffsets, historySlots);
+    final IdentityHashMap<Order, Long> newResidents = new IdentityHashMap<Order, Long>();
+    final long[] pos = { 0 };
+    final int[] p = { 0 };
+    final int[] slot = { 0 };
+    final int placedTotal = placedCount;
+
+    MappedRecordReader.scan(path("orders.txt"), r -> {
+        while (slot[0] < historySlots && historyOffsets[slot[0]] < r.lineOffset()) slot[0]++;
+        if (slot[0] >= historySlots || historyOffsets[slot[0]] != r.lineOffset()) return;   // not a live history row
+        while (p[0] < placedTotal && residentOffsets.get(placed[p[0]]) < r.lineOffset()) {
+            pos[0] += writeOrderLine(w, formatOrderLine(placed[p[0]]), placed[p[0]], newResidents, pos[0]);
+            p[0]++;
+        }
+        newHistory[slot[0]] = pos[0];
+        pos[0] += writeOrderLine(w, r.lineText(), null, null, pos[0]);
+        slot[0]++;
+    });
+    while (p[0] < placedTotal) {
+        pos[0] += writeOrderLine(w, formatOrderLine(placed[p[0]]), placed[p[0]], newResidents, pos[0]);
+        p[0]++;
+    }
+    for (int i = 0; i < unplacedCount; i++) {
+        pos[0] += writeOrderLine(w, formatOrderLine(unplaced[i]), unplaced[i], newResidents, pos[0]);
+    }
+    pendingHistoryOffsets = newHistory;
+    pendingResidentOffsets = newResidents;
+}
+
+/** Write one row and return its length in bytes (UTF-8, including the newline) */
+private static long writeOrderLine(Writer w, String line, Order o, IdentityHashMap<Order, Long> offsets, long pos) throws Exception {
+    w.write(line);
+    w.write("\n");
+    if (o != null) offsets.put(o, pos);
+    return line.getBytes(java.nio.charset.StandardCharsets.UTF_8).length + 1;
+}
+
+/** orders.txt was replaced: switch to the row offsets recorded while writing it */
+private void applyPendingOrderLayout() {
+    if (pendingHistoryOffsets != null && pendingHistoryOffsets.length == historySlots) {
+        System.arraycopy(pendingHistoryOffsets, 0, historyOffsets, 0, historySlots);
+        residentOffsets = pendingResidentOffsets;
+    }
+    pendingHistoryOffsets = null;
+    pendingResidentOffsets = null;
+}
+
+// =====================================================
+// TEST DATA (bulk fixture loader)
+// =====================================================
+// File layout: "#PRODUCTS", "#ORDERS" and "#ADMINS" lines switch section; any other line starting
+// with '#' is a comment. Rows:
+//   #PRODUCTS  ProductID|Category|Brand|Name|Price|Stock
+//   #ORDERS    OrderID|Date|Address|PaymentMode|Status|ItemList|Total[|CancelReason]
+//   #ADMINS    Username|PassHash[|Role]
+// The file is streamed through MappedRecordReader, so its size is not limited by memory.
+// Rows whose ID already exists update that record (upsert) instead of adding a duplicate.
+
+/** Per-section counters for loadTestDataFromFile */
+private static class SectionStats {
+    final String name;
+    int added = 0;
+    int updated = 0;
+    long nanos = 0;
+    SectionStats(String name) {
+        this.name = name;
+    }
+}
+
+public void loadTestDataFromFile(String filename) {
+    final SectionStats productStats = new SectionStats("Products");
+    final SectionStats orderStats = new SectionStats("Orders");
+    final SectionStats adminStats = new SectionStats("Admins");
+    final SectionStats[] current = { null };
+    final long[] sectionStart = { 0 };
+
+    try {
+        MappedRecordReader.scan(path(filename), r -> {
+            if (r.firstChar() == '#') {
+                SectionStats next = null;
+                String head = r.lineText().toUpperCase();
+                if (head.equals("#PRODUCTS")) next = productStats;
+                else if (head.equals("#ORDERS")) next = orderStats;
+                else if (head.equals("#ADMINS")) next = adminStats;
+                if (next == null) return;   // "# Format: ..." and other comments
+
+                long now = System.nanoTime();
+                if (current[0] != null) current[0].nanos += now - sectionStart[0];
+                current[0] = next;
+                sectionStart[0] = now;
+                return;
+            }
+
+            if (current[0] == productStats) upsertTestProduct(r, productStats);
+            else if (current[0] == orderStats) upsertTestOrder(r, orderStats);
+            else if (current[0] == adminStats) upsertTestAdmin(r, adminStats);
+        });
+        if (current[0] != null) current[0].nanos += System.nanoTime() - sectionStart[0];
+
+        // a large batch of orders is cheaper as one orders.txt rewrite than as journal records
+        if (orderStats.added + orderStats.updated > JOURNAL_COMPACT_THRESHOLD) markOrdersDirty();
 
         System.out.println(PINK+"Test data loaded from: " + filename+RESET);
-        System.out.println(LAVENDER+"- Products added: " + productLoaded+RESET);
-        System.out.println(LAVENDER+"- Orders added: " + orderLoaded+RESET);
-        System.out.println(LAVENDER+"- Admins added: " + adminLoaded+RESET);
+        printSectionStats(productStats);
+        printSectionStats(orderStats);
+        printSectionStats(adminStats);
 
     } catch (Exception e) {
         System.out.println(ROSE+" Failed to load test data from " + filename + ": " + e.getMessage()+RESET);
     }
 }
+
+private void upsertTestProduct(MappedRecordReader r, SectionStats stats) {
+    if (r.fieldCount() != 6) return;
+    String pid = r.text(0);
+    Product existing = findProductById(pid);
+    if (existing != null) {
+        existing.category = r.text(1);
+        existing.brand = r.text(2);
+        existing.name = r.text(3);
+        existing.price = r.intValue(4);
+        existing.stock = r.intValue(5);
+        markProductsDirty();
+        stats.updated++;
+    } else {
+        addProduct(new Product(pid, r.text(1), r.text(2), r.text(3), r.intValue(4), r.intValue(5)));
+        stats.added++;
+    }
+}
+
+/** Status of a stored or imported row; an empty or unknown status falls back to PENDING (the default of
+ *  a new Order) so the row is kept instead of being dropped and deleted by the next save */
+private static OrderStatus storedStatus(String text, String orderId) {
+    OrderStatus st = OrderStatus.parse(text);
+    if (st == null) {
+        System.out.println(ROSE+"Invalid status \"" + text + "\" for order " + orderId + ". Using PENDING by default."+RESET);
+        st = OrderStatus.PENDING;
+    }
+    return st;
+}
+
+private void upsertTestOrder(MappedRecordReader r, SectionStats stats) {
+    if (r.fieldCount() < 7) return;
+    Order o = new Order();
+    o.orderId = normalizeOrderId(r.text(0));
+    if (o.orderId.length() == 0) o.orderId = r.text(0);   // keep non-numeric IDs as written
+    o.date = r.text(1);
+    o.address = r.text(2);
+    o.paymentMode = r.text(3);
+    o.status = storedStatus(r.text(4), o.orderId);
+    r.itemsInto(5, o);
+    o.totalAmount = r.intValue(6);
+    if (r.fieldCount() >= 8) o.cancelReason = r.text(7);
+
+    Order existing = findOrderById(o.orderId);
+    if (existing != null) {
+        copyOrder(o, existing);
+        markOrderDirty(existing);
+        stats.updated++;
+    } else {
+        addOrder(o);
+        stats.added++;
+    }
+}
+
+private void upsertTestAdmin(MappedRecordReader r, SectionStats stats) {
+    if (r.fieldCount() < 2) return;
+    String username = r.text(0);
+    String passHash = r.text(1);
+    Role role = Role.ADMIN;
+    if (r.fieldCount() >= 3) {
+        try {
+            role = Role.valueOf(r.text(2).toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            role = Role.ADMIN;
+        }
+    }
+    Admin existing = findAdmin(username);
+    if (existing != null) {
+        existing.passHash = passHash;
+        if (r.fieldCount() >= 3) existing.role = role;
+        markAdminsDirty();
+        stats.updated++;
+    } else {
+        addAdmin(new Admin(username, passHash, role));
+        stats.added++;
+    }
+}
+
+private void printSectionStats(SectionStats st) {
+    int records = st.added + st.updated;
+    long perSec = (st.nanos > 0 ? (long) (records * 1e9 / st.nanos) : 0);
+    System.out.println(LAVENDER+"- " + st.name + ": " + st.added + " added, " + st.updated + " updated ("
+            + perSec + " records/sec)"+RESET);
+}
+    /** Queue an audit line for login_audit.txt (buffered; see LoginAudit) */
     public void appendLoginAudit(String action, String username) {
-    FileWriter fw = null;
+    loginAudit().record(action, username, currentDateTimeString());
+}
+
+/** The login audit writer and its per-user aggregates (opened on first use) */
+public synchronized LoginAudit loginAudit() {
+    if (loginAudit == null) {
+        loginAudit = new LoginAudit(path("login_audit.txt"), path("login_audit.sum"));
+        loginAudit.open();
+    }
+    return loginAudit;
+}
+
+/** Write queued audit lines and save the audit summary (shutdown hook) */
+public void closeLoginAudit() {
+    LoginAudit a;
+    synchronized (this) {
+        a = loginAudit;
+    }
+    if (a != null) a.close();
+}
+/** The invoice writer and its in-memory index (invoices.txt is read once, on first use) */
+public synchronized InvoiceLedger invoices() {
+    if (invoices == null) {
+        invoices = new InvoiceLedger(path("invoices.txt"));
+        invoices.open();
+    }
+    return invoices;
+}
+
+/** Processing steps already done per order, for idempotent re-runs (order_steps.txt, read on first use) */
+public synchronized StepLedger orderSteps() {
+    if (orderSteps == null) {
+        orderSteps = new StepLedger(path("order_steps.txt"), this);
+        orderSteps.open(productsStepMark());
+    }
+    return orderSteps;
+}
+
+/** Write queued step records (shutdown hook) */
+public void closeOrderSteps() {
+    StepLedger s;
+    synchronized (this) {
+        s = orderSteps;
+    }
+    if (s != null) s.close();
+}
+
+/** order_steps.txt offset whose stock the current products.txt includes (products.steps, read on first use) */
+private long productsStepMark() {
+    if (stepsCovered < 0) readStepsMark();
+    return stepsCovered;
+}
+
+/** Pick the offset in products.steps that belongs to the products.txt on disk (matched by size + CRC32) */
+private void readStepsMark() {
+    stepsCovered = 0;
+    productsBytes = -1;
+    productsCrc = 0;
     try {
-        fw = new FileWriter(path("login_audit.txt"), true);
-        fw.write(action + "|" + username + "|" + currentDateTimeString() + "\n");
+        byte[] b = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(path("products.txt")));
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        crc.update(b, 0, b.length);
+        productsBytes = b.length;
+        productsCrc = crc.getValue();
     } catch (Exception e) {
-        // ignore to avoid crash
-    } finally {
-        try { if (fw != null) fw.close(); } catch (Exception ex) {}
+        // no products.txt yet
+    }
+    try {
+        BufferedReader br = new BufferedReader(new FileReader(path(STEPS_MARK_FILE)));
+        try {
+            String line = br.readLine();
+            String[] f = (line == null ? new String[0] : line.trim().split("\\|"));
+            if (f.length < 6) return;
+            if (Long.parseLong(f[1]) == productsBytes && Long.parseLong(f[2]) == productsCrc) {
+                stepsCovered = Long.parseLong(f[0]);
+            } else if (Long.parseLong(f[4]) == productsBytes && Long.parseLong(f[5]) == productsCrc) {
+                stepsCovered = Long.parseLong(f[3]);   // crash between the two renames: still the old products.txt
+            } else {
+                stepsCovered = Long.parseLong(f[0]);   // products.txt edited by hand since: its stock is taken as is
+            }
+        } finally {
+            br.close();
+        }
+    } catch (Exception e) {
+        // no steps recorded yet
+    }
+}
+
+/** Write queued invoice lines (shutdown hook) */
+public void closeInvoices() {
+    InvoiceLedger l;
+    synchronized (this) {
+        l = invoices;
     }
+    if (l != null) l.close();
 }
 public String currentDateTimeString() {
     java.time.LocalDateTime dt = java.time.LocalDateTime.now();
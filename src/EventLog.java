@@ -0,0 +1,168 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/** EventLog.java – Structured, time-ordered event stream (events.txt) written next to logs.txt
+ *
+ *  Lines are appended in time order, so a time-range query binary-searches the byte offsets of the
+ *  range in the file and then streams only that slice once, filtering by order and event type.
+ */
+public class EventLog {
+    private static final int PROBE_BYTES = 256;
+
+    private final String path;
+    private final DataPersistence dp;
+    private final AsyncLineWriter writer;
+    private long lastTime = 0;          // timestamps never go backwards, even if the clock does
+
+    public EventLog(String path, DataPersistence dp) {
+        this.path = path;
+        this.dp = dp;
+        this.writer = new AsyncLineWriter(path, "events-writer");
+        try {
+            lastTime = lastTimeOnDisk();
+        } catch (IOException e) {
+            lastTime = 0;
+        }
+    }
+
+    /** Queue one event for a Log.write entry and return it (caller serializes calls) */
+    public LogEvent record(String orderId, String message) {
+        long now = Math.max(System.currentTimeMillis(), lastTime);
+        lastTime = now;
+        String key = dp.orderKey(orderId);
+        if (key.length() == 0) key = orderId;     // "ADMIN" and other system entries keep their name
+        String admin = "-";
+        if (dp.currentAdminIndex >= 0 && dp.currentAdminIndex < dp.adminCount) {
+            admin = dp.admins[dp.currentAdminIndex].username;
+        }
+        LogEvent e = new LogEvent(now, key, LogEvent.classify(orderId, message), admin, message);
+        writer.append(e.toLine());
+        return e;
+    }
+
+    /** Events matching every given filter, oldest first.
+     *  orderId / type: null or "" = any; fromMillis / toMillis are inclusive (use 0 / Long.MAX_VALUE for open ends). */
+    public List<LogEvent> query(String orderId, String type, long fromMillis, long toMillis) throws Exception {
+        writer.flush();
+        ArrayList<LogEvent> result = new ArrayList<LogEvent>();
+        if (!new File(path).exists() || fromMillis > toMillis) return result;
+
+        final String key = keyFilter(orderId);
+        final String wantType = (type == null || type.trim().length() == 0) ? null : LogEvent.normalizeType(type);
+
+        long start;
+        long end;
+        RandomAccessFile raf = new RandomAccessFile(path, "r");
+        try {
+            start = (fromMillis <= 0) ? 0 : firstLineAtOrAfterTime(raf, fromMillis);
+            end = (toMillis == Long.MAX_VALUE) ? raf.length() : firstLineAtOrAfterTime(raf, toMillis + 1);
+        } finally {
+            raf.close();
+        }
+        if (start >= end) return result;
+
+        MappedRecordReader.scan(path, start, end, r -> {
+            if (key != null && !r.fieldEquals(1, key)) return;
+            if (wantType != null && !r.fieldEquals(2, wantType)) return;
+            result.add(LogEvent.parse(r));
+        });
+        return result;
+    }
+
+    public void flush() {
+        writer.flush();
+    }
+
+    public void clear() throws IOException {
+        writer.truncate();
+    }
+
+    public long droppedCount() {
+        return writer.droppedCount();
+    }
+
+    public void close() {
+        writer.close();
+    }
+
+    private String keyFilter(String orderId) {
+        if (orderId == null || orderId.trim().length() == 0) return null;
+        String id = orderId.trim();
+        if (id.equalsIgnoreCase("ADMIN")) return "ADMIN";
+        String key = dp.orderKey(id);
+        return key.length() == 0 ? id : key;
+    }
+
+    /** Byte offset of the first line whose timestamp is >= t (file length if there is none).
+     *  Lower-bound search over byte positions: each probe reads one line start. */
+    private long firstLineAtOrAfterTime(RandomAccessFile raf, long t) throws IOException {
+        long len = raf.length();
+        byte[] buf = new byte[PROBE_BYTES];
+        long lo = 0;
+        long hi = len;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            long line = lineStartAtOrAfter(raf, mid, len, buf);
+            if (line >= len || timeAt(raf, line, buf) >= t) hi = mid;
+            else lo = mid + 1;
+        }
+        return lineStartAtOrAfter(raf, lo, len, buf);
+    }
+
+    /** First line start at or after pos (pos itself if it is 0 or follows a '\n') */
+    private long lineStartAtOrAfter(RandomAccessFile raf, long pos, long len, byte[] buf) throws IOException {
+        if (pos == 0) return 0;
+        long p = pos - 1;
+        while (p < len) {
+            raf.seek(p);
+            int n = raf.read(buf, 0, (int) Math.min(buf.length, len - p));
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf[i] == '\n') return p + i + 1;
+            }
+            p += n;
+        }
+        return len;
+    }
+
+    /** Leading timestamp of the line starting at `line` */
+    private long timeAt(RandomAccessFile raf, long line, byte[] buf) throws IOException {
+        raf.seek(line);
+        int n = raf.read(buf, 0, 24);
+        long value = 0;
+        for (int i = 0; i < n; i++) {
+            byte c = buf[i];
+            if (c >= '0' && c <= '9') value = value * 10 + (c - '0');
+            else if (c == '|' || c == '\n') break;
+        }
+        return value;
+    }
+
+    /** Timestamp of the last event already in events.txt (0 if the file is empty or missing) */
+    private long lastTimeOnDisk() throws IOException {
+        File f = new File(path);
+        if (!f.exists() || f.length() == 0) return 0;
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            long len = raf.length();
+            long end = len;
+            byte[] one = new byte[1];
+            raf.seek(len - 1);
+            raf.readFully(one);
+            if (one[0] == '\n') end = len - 1;
+            long p = end - 1;
+            while (p > 0) {
+                raf.seek(p - 1);
+                raf.readFully(one);
+                if (one[0] == '\n') break;
+                p--;
+            }
+            return timeAt(raf, Math.max(0, p), new byte[PROBE_BYTES]);
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/** Inventory.java – Stock reservation used by the concurrent order engine (implementations must be thread-safe) */
+public interface Inventory {
+    /** Reserve every item of the order, all or nothing. Returns null on success, otherwise the
+     *  Product ID that could not be covered (nothing is reserved in that case). */
+    String reserve(Order order);
+
+    /** Give back exactly what a successful reserve(order) took */
+    void release(Order order);
+
+    /** Current stock of a product (0 if unknown) */
+    int available(String productId);
+}
@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/** InvoiceLedger.java – Buffered writer for invoices.txt with an in-memory invoice index
+ *
+ *  Lines ("INV-202602-1006|BDT 160483") are queued to a background AsyncLineWriter instead of opening
+ *  the file per invoice. The file is read once when the ledger opens; after that every invoice ID and
+ *  per-month total is answered from memory. An invoice ID that already exists is not written again
+ *  (the first invoice stays authoritative, both for new IDs and for duplicates already in the file).
+ */
+public class InvoiceLedger {
+
+    /** One indexed invoice (the first line written for its ID) */
+    public static class Invoice {
+        public String id;
+        public long amount;
+
+        Invoice(String id, long amount) {
+            this.id = id;
+            this.amount = amount;
+        }
+
+        /** "202602" from "INV-202602-1006" ("" if the ID has another shape) */
+        public String month() {
+            return (id.length() >= 10 && id.startsWith("INV-")) ? id.substring(4, 10) : "";
+        }
+    }
+
+    /** Totals of one month's invoices */
+    public static class MonthTotal {
+        public String month;
+        public int count;
+        public long amount;
+
+        MonthTotal(String month) {
+            this.month = month;
+        }
+    }
+
+    private final String path;
+    private final HashMap<String, Invoice> byId = new HashMap<String, Invoice>();
+    private final HashMap<String, MonthTotal> months = new HashMap<String, MonthTotal>();
+    private AsyncLineWriter writer;
+    private int duplicatesOnDisk = 0;     // repeated IDs found in invoices.txt when it was opened
+    private int suppressed = 0;           // repeated IDs refused by append() since then
+
+    public InvoiceLedger(String path) {
+        this.path = path;
+    }
+
+    /** Index the existing invoices.txt (one pass) and start the background writer */
+    public synchronized void open() {
+        try {
+            MappedRecordReader.scan(path, r -> {
+                if (r.fieldCount() < 2) return;
+                if (!index(r.text(0), r.longValue(1))) duplicatesOnDisk++;
+            });
+        } catch (Exception e) {
+            // no invoices yet
+        }
+        writer = new AsyncLineWriter(path, "invoice-writer");
+    }
+
+    /** Queue an invoice line. Returns false (and writes nothing) if the ID was already invoiced. */
+    public synchronized boolean append(String invoiceId, long amount) {
+        if (!index(invoiceId, amount)) {
+            suppressed++;
+            return false;
+        }
+        String line = invoiceId + "|BDT " + amount;
+        while (!writer.append(line)) {
+            writer.flush();        // queue full: wait for the writer rather than lose an invoice
+        }
+        return true;
+    }
+
+    /** The invoice with this ID, or null */
+    public synchronized Invoice find(String invoiceId) {
+        return byId.get(invoiceId == null ? "" : invoiceId.trim().toUpperCase());
+    }
+
+    /** Per-month totals, oldest month first */
+    public synchronized List<MonthTotal> monthTotals() {
+        ArrayList<MonthTotal> list = new ArrayList<MonthTotal>(months.values());
+        Collections.sort(list, (a, b) -> a.month.compareTo(b.month));
+        return list;
+    }
+
+    public synchronized int count() {
+        return byId.size();
+    }
+
+    public synchronized int duplicatesOnDisk() {
+        return duplicatesOnDisk;
+    }
+
+    public synchronized int suppressedCount() {
+        return suppressed;
+    }
+
+    /** Wait until every queued invoice is in invoices.txt */
+    public void flush() {
+        if (writer != null) writer.flush();
+    }
+
+    public void close() {
+        if (writer != null) writer.close();
+    }
+
+    /** Add to the index and month totals; false if the ID is already there */
+    private boolean index(String id, long amount) {
+        if (id.length() == 0 || byId.containsKey(id)) return false;
+        Invoice inv = new Invoice(id, amount);
+        byId.put(id, inv);
+        String m = inv.month();
+        MonthTotal t = months.get(m);
+        if (t == null) {
+            t = new MonthTotal(m);
+            months.put(m, t);
+        }
+        t.count++;
+        t.amount += amount;
+        return true;
+    }
+}
@@ -1,52 +1,133 @@
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
-/** Log.java – Handles workflow logging to logs.txt and viewing order timelines */
+/** Log.java – Handles workflow logging to logs.txt (rolled into compressed segments, plus structured events.txt)
+ *  and viewing order timelines */
 public class Log {
  
     public static final String RESET = "\u001B[0m";
     public static final String ROSE      = "\u001B[38;5;174m"; // exit/error
+    private static final int WRITE_ALL_CHUNK = 4096;   // writeAll entries per lock hold (writer queues hold 65536)
    
     private DataPersistence dp;
+    private AsyncLineWriter writer;    // background appender for logs.txt
+    private LogSegments segments;      // logs.txt is the active segment, older ones are logs.NNNNNN.txt.gz
+    private LogIndex index;            // Order ID -> line positions (logs.idx)
+    private long nextOffset;           // byte offset in the active segment the next entry will be written at
+    private EventLog events;           // structured copy of every entry (events.txt)
+    private RecentEvents recent = new RecentEvents(RecentEvents.DEFAULT_CAPACITY);   // last entries, in memory only
 
     public Log(DataPersistence dp) {
         this.dp = dp;
+        this.writer = new AsyncLineWriter(dp.path("logs.txt"), "log-writer");
+        this.segments = new LogSegments(dp.path("logs.txt"));
+        this.index = new LogIndex(segments, dp.path("logs.idx"), dp);
+        index.open();
+        this.nextOffset = segments.activeBytes();
+        this.events = new EventLog(dp.path("events.txt"), dp);
     }
    
-    /** Append a log entry to logs.txt */
-    public void write(String orderId, String message) {
-        try {
-            FileWriter fw = new FileWriter(dp.path("logs.txt"), true);  // open in append mode
-            fw.write("Order " + orderId + " - " + message + "\n");
-            fw.close();
-        } catch (Exception e) {
-            // ignore logging errors to avoid disrupting main flow
+    /** Append a log entry to logs.txt and its structured event to events.txt
+     *  (queued; written by the background writers, never blocks on disk) */
+    public synchronized void write(String orderId, String message) {
+        String line = "Order " + orderId + " - " + message;
+        if (segments.shouldRoll(nextOffset) && segments.seal(writer)) {
+            nextOffset = 0;    // the writer thread renames logs.txt; this entry starts the next segment
+        }
+        if (writer.append(line)) {
+            index.record(orderId, segments.activeSegment(), nextOffset);
+            nextOffset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        recent.add(events.record(orderId, message));   // the ring copies the fields of the event EventLog built
+    }
+
+    /** Append a batch of entries and wait until they are on disk (bulk updates). Entries go in chunks of
+     *  WRITE_ALL_CHUNK per lock acquisition; the wait for the writers happens between chunks with the lock
+     *  released, so other threads can log meanwhile and a large batch never overfills the writer queues. */
+    public void writeAll(String[] orderIds, String[] messages, int count) {
+        for (int start = 0; start < count; start += WRITE_ALL_CHUNK) {
+            int end = Math.min(count, start + WRITE_ALL_CHUNK);
+            synchronized (this) {
+                for (int i = start; i < end; i++) {
+                    write(orderIds[i], messages[i]);
+                }
+            }
+            flush();
+        }
+    }
+
+    /** The most recent entries straight from memory, oldest first (orderId null/"" = all orders; "ADMIN" = system entries).
+     *  Lock-free and never touches the file system. */
+    public List<LogEvent> recentEvents(int max, String orderId) {
+        String key = null;
+        if (orderId != null && orderId.trim().length() > 0) {
+            key = orderId.trim().equalsIgnoreCase("ADMIN") ? "ADMIN" : dp.orderKey(orderId.trim());
         }
+        return recent.recent(max, key);
+    }
+
+    /** Structured events filtered by order, type and time range in one pass (null/"" = any; times inclusive, epoch ms) */
+    public List<LogEvent> queryEvents(String orderId, String type, long fromMillis, long toMillis) throws Exception {
+        return events.query(orderId, type, fromMillis, toMillis);
+    }
+
+    /** Wait until every entry written so far is in logs.txt (call before reading the file) */
+    public void flush() {
+        writer.flush();
+        index.flush();
+        events.flush();
+    }
+
+    /** Empty logs.txt, delete its sealed segments and index, and empty events.txt */
+    public synchronized void clear() throws Exception {
+        writer.truncate();
+        segments.clear();
+        index.clear();
+        events.clear();
+        recent.clear();
+        nextOffset = 0;
+    }
+
+    /** Write pending entries and stop the background writers (shutdown hook) */
+    public void close() {
+        writer.close();
+        index.close();
+        events.close();
+        segments.close();
+        if (writer.droppedCount() > 0) {
+            System.out.print(ROSE+writer.droppedCount() + " log entries were dropped (log queue full).\n"+RESET);
+        }
+        if (events.droppedCount() > 0) {
+            System.out.print(ROSE+events.droppedCount() + " events were dropped (event queue full).\n"+RESET);
+        }
+    }
+
+    /** Number of sealed segments and their bytes on disk, plus the active segment's size */
+    public String storageSummary() {
+        return segments.sealedSegments().length + " sealed segment(s), " + (segments.sealedBytes() + 1023) / 1024
+                + " KB compressed; active logs.txt " + (segments.activeBytes() + 1023) / 1024 + " KB";
+    }
+
+    /** All log lines of one order, oldest first, read at the positions in logs.idx (spanning segments)
+     *  ("01019", "O1019" and "1019" are the same order) */
+    public List<String> linesForOrder(String orderId) throws Exception {
+        flush();
+        return index.readLines(index.positionsFor(orderId));
     }
 
     /** Display all log entries for a given Order ID (order timeline) */
     public void viewLogsByOrder(String orderId) {
-        BufferedReader br = null;
         try {
-            br = new BufferedReader(new FileReader(dp.path("logs.txt")));
-            String line;
-            boolean foundAny = false;
-            while ((line = br.readLine()) != null) {
-                if (line.contains("Order " + orderId + " ")) {
-                    System.out.print(line + "\n");
-                    foundAny = true;
-                }
+            List<String> lines = linesForOrder(orderId);
+            for (int i = 0; i < lines.size(); i++) {
+                System.out.print(lines.get(i) + "\n");
             }
-            if (!foundAny) {
+            if (lines.isEmpty()) {
                 System.out.print(ROSE+"No log entries found for Order " + orderId + ".\n"+RESET);
             }
         } catch (Exception e) {
             System.out.print(ROSE+"Error reading logs.\n"+RESET);
-        } finally {
-            try { if (br != null) br.close(); } catch (Exception ex) { /* ignore */ }
         }
     }
     
 }
-
@@ -0,0 +1,81 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/** LogEvent.java – One structured workflow event as stored in events.txt
+ *
+ *  Line format: epochMillis|OrderKey|TYPE|admin|detail
+ *  (OrderKey is the canonical Order ID, or "ADMIN" for system entries; '|' and line breaks in detail become spaces)
+ */
+public class LogEvent {
+    public static final String STATUS       = "STATUS";
+    public static final String CREATED      = "CREATED";
+    public static final String INVENTORY    = "INVENTORY";
+    public static final String PAYMENT_OK   = "PAYMENT_OK";
+    public static final String PAYMENT_FAIL = "PAYMENT_FAIL";
+    public static final String PAYMENT_VOID = "PAYMENT_VOID";
+    public static final String CANCELLED    = "CANCELLED";
+    public static final String REORDER      = "REORDER";
+    public static final String RETRY        = "RETRY";
+    public static final String SIMULATION   = "SIMULATION";
+    public static final String ARCHIVE      = "ARCHIVE";
+    public static final String ADMIN        = "ADMIN";
+    public static final String INFO         = "INFO";
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public long time;          // epoch milliseconds
+    public String orderId;
+    public String type;
+    public String admin;
+    public String detail;
+
+    public LogEvent(long time, String orderId, String type, String admin, String detail) {
+        this.time = time;
+        this.orderId = orderId;
+        this.type = type;
+        this.admin = admin;
+        this.detail = detail;
+    }
+
+    /** Event type of a Log.write message (the messages themselves are unchanged) */
+    public static String classify(String orderId, String message) {
+        if ("ADMIN".equals(orderId)) return ADMIN;
+        if (message.startsWith("Status changed to")) return STATUS;
+        if (message.startsWith("PAYMENT OK")) return PAYMENT_OK;
+        if (message.startsWith("PAYMENT FAIL")) return PAYMENT_FAIL;
+        if (message.startsWith("PAYMENT VOID")) return PAYMENT_VOID;
+        if (message.startsWith("Order cancelled")) return CANCELLED;
+        if (message.startsWith("Inventory OK")) return INVENTORY;
+        if (message.startsWith("Reservation expired")) return INVENTORY;
+        if (message.startsWith("Order created")) return CREATED;
+        if (message.startsWith("Reordered")) return REORDER;
+        if (message.startsWith("Retry")) return RETRY;
+        if (message.startsWith("Simulation")) return SIMULATION;
+        if (message.startsWith("Archived")) return ARCHIVE;
+        return INFO;
+    }
+
+    /** User input ("payment fail", "Payment-Fail") to a type name ("PAYMENT_FAIL") */
+    public static String normalizeType(String type) {
+        return type.trim().toUpperCase().replace(' ', '_').replace('-', '_');
+    }
+
+    public String toLine() {
+        return time + "|" + orderId + "|" + type + "|" + admin + "|" + clean(detail);
+    }
+
+    public static LogEvent parse(MappedRecordReader r) {
+        return new LogEvent(r.longValue(0), r.text(1), r.text(2), r.text(3), r.text(4));
+    }
+
+    public String timeText() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()).format(TIME_FORMAT);
+    }
+
+    private static String clean(String s) {
+        if (s == null) return "";
+        return s.replace('|', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** LogIndex.java – Sidecar index (logs.idx) from canonical Order ID to the positions of its log lines
+ *
+ *  logs.idx holds one "OrderKey|segment|offset" line per indexed log line and is appended as the log grows
+ *  (segment numbers and offsets as in LogSegments). At startup the index is checked against the segments,
+ *  lines logged since the last run are added, and a missing or inconsistent index is rebuilt with one
+ *  scan of every segment.
+ */
+public class LogIndex {
+    private final LogSegments segments;
+    private final String idxPath;
+    private final DataPersistence dp;
+    private final HashMap<String, long[]> positions = new HashMap<String, long[]>();  // key -> packed positions (slot 0 = count)
+    private long lastPosition = -1;               // packed position of the last indexed line
+    private AsyncLineWriter idxWriter;
+
+    public LogIndex(LogSegments segments, String idxPath, DataPersistence dp) {
+        this.segments = segments;
+        this.idxPath = idxPath;
+        this.dp = dp;
+    }
+
+    /** Load logs.idx and bring it up to date with the log segments (rebuilding it if it does not match) */
+    public void open() {
+        boolean valid = load();
+        if (!valid) {
+            positions.clear();
+            lastPosition = -1;
+        }
+        ArrayList<String> added = new ArrayList<String>();
+        catchUp(added);
+        if (valid) {
+            idxWriter = new AsyncLineWriter(idxPath, "log-index-writer");
+            for (int i = 0; i < added.size(); i++) idxWriter.append(added.get(i));
+        } else {
+            rewrite();
+            idxWriter = new AsyncLineWriter(idxPath, "log-index-writer");
+        }
+    }
+
+    /** Index a line that was just appended to the given segment at the given offset */
+    public void record(String orderId, int segment, long offset) {
+        String key = dp.orderKey(orderId);
+        if (key.length() == 0) return;   // ADMIN and other non-order entries
+        add(key, LogSegments.pack(segment, offset));
+        if (idxWriter != null) idxWriter.append(key + "|" + segment + "|" + offset);
+    }
+
+    /** Packed positions of every log line for this order, oldest first (any ID spelling accepted) */
+    public long[] positionsFor(String orderId) {
+        long[] list = positions.get(dp.orderKey(orderId));
+        if (list == null) return new long[0];
+        return Arrays.copyOfRange(list, 1, 1 + (int) list[0]);
+    }
+
+    /** Read the lines at the given positions, across sealed and active segments */
+    public List<String> readLines(long[] at) throws Exception {
+        return segments.readLines(at);
+    }
+
+    /** Forget everything (the log was cleared) */
+    public void clear() throws IOException {
+        positions.clear();
+        lastPosition = -1;
+        if (idxWriter != null) idxWriter.truncate();
+    }
+
+    public void flush() {
+        if (idxWriter != null) idxWriter.flush();
+    }
+
+    public void close() {
+        if (idxWriter != null) idxWriter.close();
+    }
+
+    private void add(String key, long position) {
+        long[] list = positions.get(key);
+        if (list == null) {
+            list = new long[4];
+            positions.put(key, list);
+        }
+        int n = (int) list[0];
+        if (n + 1 >= list.length) {
+            list = Arrays.copyOf(list, list.length * 2);
+            positions.put(key, list);
+        }
+        list[n + 1] = position;
+        list[0] = n + 1;
+        if (position > lastPosition) lastPosition = position;
+    }
+
+    /** Read logs.idx. False if it is missing, in the old single-file format, or no longer describes
+     *  the segments (e.g. logs.txt was cleared or replaced by hand). */
+    private boolean load() {
+        if (!new java.io.File(idxPath).exists()) return false;
+        final int active = segments.activeSegment();
+        final long activeLength = segments.activeBytes();
+        final boolean[] oldFormat = { false };
+        try {
+            MappedRecordReader.scan(idxPath, r -> {
+                if (r.fieldCount() < 3) {
+                    oldFormat[0] = true;
+                    return;
+                }
+                int segment = r.intValue(1);
+                long offset = r.longValue(2);
+                if (segment > active || (segment == active && offset >= activeLength)) return;   // never written to the log
+                add(r.text(0), LogSegments.pack(segment, offset));
+            });
+            if (oldFormat[0]) return false;
+            if (lastPosition < 0) return activeLength == 0 && segments.sealedSegments().length == 0;
+            // the last indexed line must still be an entry for that order
+            String line = readLines(new long[] { lastPosition }).get(0);
+            String key = keyOf(line);
+            long[] list = positions.get(key);
+            return list != null && list[(int) list[0]] == lastPosition;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /** Index lines logged after lastPosition (every segment if the index is empty); their idx records are collected in `added` */
+    private void catchUp(ArrayList<String> added) {
+        final long after = lastPosition;
+        int first;
+        long from;
+        if (after < 0) {
+            int[] sealed = segments.sealedSegments();
+            first = (sealed.length == 0 ? segments.activeSegment() : sealed[0]);
+            from = 0;
+        } else {
+            first = LogSegments.segmentOf(after);
+            from = LogSegments.offsetOf(after);
+        }
+        for (int seg = first; seg <= segments.activeSegment(); seg++) {
+            final int segment = seg;
+            try {
+                segments.forEachLine(segment, seg == first ? from : 0, (offset, text) -> {
+                    long position = LogSegments.pack(segment, offset);
+                    if (position <= after) return;
+                    String key = keyOf(text);
+                    if (key.length() == 0) return;
+                    add(key, position);
+                    added.add(key + "|" + segment + "|" + offset);
+                });
+            } catch (Exception e) {
+                // segment missing (no logs.txt yet)
+            }
+        }
+    }
+
+    /** Write logs.idx from memory (after a rebuild) */
+    private void rewrite() {
+        try {
+            Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(idxPath, false), StandardCharsets.UTF_8), 1 << 16);
+            try {
+                for (String key : positions.keySet()) {
+                    long[] list = positions.get(key);
+                    for (int i = 1; i <= list[0]; i++) {
+                        w.write(key + "|" + LogSegments.segmentOf(list[i]) + "|" + LogSegments.offsetOf(list[i]) + "\n");
+                    }
+                }
+            } finally {
+                w.close();
+            }
+        } catch (IOException e) {
+            // index is rebuilt again next time
+        }
+    }
+
+    /** Canonical order key of a "Order <id> - message" line ("" if it is not an order entry) */
+    private String keyOf(String line) {
+        if (!line.startsWith("Order ")) return "";
+        int end = line.indexOf(" - ", 6);
+        if (end < 0) return "";
+        return dp.orderKey(line.substring(6, end));
+    }
+}
@@ -0,0 +1,347 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/** LogSegments.java – Segment files behind logs.txt
+ *
+ *  logs.txt is the active segment. When it passes MAX_SEGMENT_BYTES or MAX_SEGMENT_AGE_MS it is sealed:
+ *  renamed to logs.000042.txt and gzip-compressed in the background to logs.000042.txt.gz.
+ *  A log position is (segment number, byte offset inside the uncompressed segment); the active file
+ *  always has the number it will get when it is sealed, so positions stay valid across rollovers.
+ */
+public class LogSegments {
+    public static final long MAX_SEGMENT_BYTES = 8L * 1024 * 1024;
+    public static final long MAX_SEGMENT_AGE_MS = 24L * 60 * 60 * 1000;
+
+    /** Called for every line of a segment with its byte offset */
+    public interface LineHandler {
+        void line(long offset, String text) throws Exception;
+    }
+
+    private final File activeFile;
+    private final File dir;
+    private final String base;                    // "logs"
+    private final Pattern sealedName;
+    private int activeSegment;
+    private long activeSince;                     // when the active segment was started
+    private final ArrayList<Thread> compressors = new ArrayList<Thread>();
+
+    public LogSegments(String activePath) {
+        this.activeFile = new File(activePath);
+        File parent = activeFile.getAbsoluteFile().getParentFile();
+        this.dir = parent;
+        String name = activeFile.getName();
+        this.base = name.endsWith(".txt") ? name.substring(0, name.length() - 4) : name;
+        this.sealedName = Pattern.compile(Pattern.quote(base) + "\\.(\\d{6})\\.txt(\\.gz)?");
+
+        int[] sealed = sealedSegments();
+        activeSegment = (sealed.length == 0 ? 1 : sealed[sealed.length - 1] + 1);
+        activeSince = startTimeOf(activeFile);
+
+        // sealed segments left uncompressed by an interrupted run
+        for (int i = 0; i < sealed.length; i++) {
+            new File(dir, gzName(sealed[i]) + ".tmp").delete();
+            if (plainFile(sealed[i]).exists()) compressAsync(sealed[i]);
+        }
+    }
+
+    public int activeSegment() {
+        return activeSegment;
+    }
+
+    public String activePath() {
+        return activeFile.getPath();
+    }
+
+    /** True if the active segment (activeBytes long) is full or too old and should be sealed first */
+    public boolean shouldRoll(long activeBytes) {
+        if (activeBytes <= 0) return false;
+        if (activeBytes >= MAX_SEGMENT_BYTES) return true;
+        return System.currentTimeMillis() - activeSince >= MAX_SEGMENT_AGE_MS;
+    }
+
+    /** Seal the active segment: a roll is queued behind the lines already appended, so the writer thread
+     *  renames logs.txt and starts its compression; lines appended after this call go to the next segment.
+     *  Never blocks on disk. False if the writer's queue was full (the active segment stays open). */
+    public boolean seal(AsyncLineWriter writer) {
+        int sealed = activeSegment;
+        if (!writer.rollTo(plainFile(sealed).getPath(), () -> compressAsync(sealed))) return false;
+        activeSegment++;
+        activeSince = System.currentTimeMillis();
+        return true;
+    }
+
+    /** Numbers of all sealed segments, oldest first */
+    public int[] sealedSegments() {
+        String[] names = dir.list();
+        if (names == null) return new int[0];
+        int[] found = new int[names.length];
+        int n = 0;
+        for (int i = 0; i < names.length; i++) {
+            Matcher m = sealedName.matcher(names[i]);
+            if (!m.matches()) continue;
+            int seg = Integer.parseInt(m.group(1));
+            boolean dup = false;
+            for (int k = 0; k < n; k++) {
+                if (found[k] == seg) dup = true;   // both .txt and .txt.gz while compressing
+            }
+            if (!dup) found[n++] = seg;
+        }
+        int[] result = Arrays.copyOf(found, n);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /** Bytes on disk of all sealed segments (compressed where done) */
+    public long sealedBytes() {
+        int[] sealed = sealedSegments();
+        long total = 0;
+        for (int i = 0; i < sealed.length; i++) {
+            File plain = plainFile(sealed[i]);
+            total += plain.exists() ? plain.length() : gzFile(sealed[i]).length();
+        }
+        return total;
+    }
+
+    public long activeBytes() {
+        return activeFile.length();
+    }
+
+    /** Visit every line of one segment from byte offset `from` (plain files are memory-mapped, .gz is streamed) */
+    public void forEachLine(int segment, long from, LineHandler handler) throws Exception {
+        File plain = (segment == activeSegment) ? activeFile : plainFile(segment);
+        if (plain.exists()) {
+            MappedRecordReader.scan(plain.getPath(), from, Long.MAX_VALUE, r -> handler.line(r.lineOffset(), r.lineText()));
+            return;
+        }
+        File gz = gzFile(segment);
+        if (!gz.exists()) return;
+        InputStream in = new GZIPInputStream(new FileInputStream(gz), 1 << 16);
+        try {
+            byte[] chunk = new byte[1 << 16];
+            byte[] line = new byte[512];
+            int n = 0;
+            long offset = 0;
+            long lineStart = 0;
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    byte b = chunk[i];
+                    if (b == '\n') {
+                        emit(line, n, lineStart, from, handler);
+                        n = 0;
+                        lineStart = offset + i + 1;
+                    } else if (offset + i >= from) {
+                        if (n == line.length) line = Arrays.copyOf(line, n * 2);
+                        line[n++] = b;
+                    }
+                }
+                offset += read;
+            }
+            if (n > 0) emit(line, n, lineStart, from, handler);
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Read the lines at the given packed positions (see pack), keeping their order.
+     *  Positions in the active or a not-yet-compressed segment cost one seek each; a compressed segment is streamed once. */
+    public List<String> readLines(long[] positions) throws Exception {
+        ArrayList<String> lines = new ArrayList<String>(positions.length);
+        int i = 0;
+        while (i < positions.length) {
+            int seg = segmentOf(positions[i]);
+            int j = i;
+            while (j < positions.length && segmentOf(positions[j]) == seg) j++;
+            File plain = (seg == activeSegment) ? activeFile : plainFile(seg);
+            if (plain.exists()) {
+                readPlain(plain, positions, i, j, lines);
+            } else {
+                readCompressed(seg, positions, i, j, lines);
+            }
+            i = j;
+        }
+        return lines;
+    }
+
+    /** Delete every sealed segment (the log writer truncates the active one) */
+    public void clear() throws IOException {
+        waitForCompressors(0);
+        int[] sealed = sealedSegments();
+        for (int i = 0; i < sealed.length; i++) {
+            Files.deleteIfExists(plainFile(sealed[i]).toPath());
+            Files.deleteIfExists(gzFile(sealed[i]).toPath());
+        }
+        activeSegment = 1;
+        activeSince = System.currentTimeMillis();
+    }
+
+    /** Give running compressions a moment to finish (unfinished ones are redone at the next start) */
+    public void close() {
+        waitForCompressors(2000);
+    }
+
+    /** Position of a line: segment number in the high bits, byte offset in the low 40 bits */
+    public static long pack(int segment, long offset) {
+        return ((long) segment << 40) | offset;
+    }
+
+    public static int segmentOf(long position) {
+        return (int) (position >>> 40);
+    }
+
+    public static long offsetOf(long position) {
+        return position & ((1L << 40) - 1);
+    }
+
+    private void emit(byte[] line, int n, long lineStart, long from, LineHandler handler) throws Exception {
+        if (lineStart < from) return;
+        if (n > 0 && line[n - 1] == '\r') n--;
+        String text = new String(line, 0, n, StandardCharsets.UTF_8).trim();
+        if (text.length() > 0) handler.line(lineStart, text);
+    }
+
+    private void readPlain(File f, long[] positions, int from, int to, ArrayList<String> lines) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            byte[] buf = new byte[512];
+            for (int i = from; i < to; i++) {
+                raf.seek(offsetOf(positions[i]));
+                int n = 0;
+                int b;
+                while ((b = raf.read()) != -1 && b != '\n') {
+                    if (n == buf.length) buf = Arrays.copyOf(buf, n * 2);
+                    buf[n++] = (byte) b;
+                }
+                if (n > 0 && buf[n - 1] == '\r') n--;
+                lines.add(new String(buf, 0, n, StandardCharsets.UTF_8));
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void readCompressed(int seg, long[] positions, int from, int to, ArrayList<String> lines) throws Exception {
+        String[] found = new String[to - from];
+        long first = offsetOf(positions[from]);
+        final int[] next = { from };
+        forEachLine(seg, first, (offset, text) -> {
+            while (next[0] < to && offsetOf(positions[next[0]]) < offset) next[0]++;   // position not at a line start
+            while (next[0] < to && offsetOf(positions[next[0]]) == offset) {
+                found[next[0] - from] = text;
+                next[0]++;
+            }
+        });
+        for (int i = 0; i < found.length; i++) {
+            lines.add(found[i] == null ? "" : found[i]);
+        }
+    }
+
+    private void compressAsync(int segment) {
+        Thread t = new Thread(() -> compress(segment), "log-compressor");
+        t.setDaemon(true);
+        synchronized (compressors) {
+            compressors.add(t);
+        }
+        t.start();
+    }
+
+    /** logs.N.txt -> logs.N.txt.gz.tmp -> logs.N.txt.gz, then the plain file is removed */
+    private void compress(int segment) {
+        File plain = plainFile(segment);
+        File gz = gzFile(segment);
+        File tmp = new File(dir, gzName(segment) + ".tmp");
+        try {
+            InputStream in = new FileInputStream(plain);
+            try {
+                FileOutputStream fos = new FileOutputStream(tmp);
+                try {
+                    GZIPOutputStream out = new GZIPOutputStream(new BufferedOutputStream(fos, 1 << 16), 1 << 16);
+                    byte[] buf = new byte[1 << 16];
+                    int n;
+                    while ((n = in.read(buf)) > 0) out.write(buf, 0, n);
+                    out.finish();
+                    out.flush();
+                    fos.getChannel().force(true);
+                    out.close();
+                } finally {
+                    fos.close();
+                }
+            } finally {
+                in.close();
+            }
+            Files.move(tmp.toPath(), gz.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(plain.toPath());
+        } catch (IOException e) {
+            tmp.delete();   // the plain segment stays readable and is compressed again next start
+        } finally {
+            synchronized (compressors) {
+                compressors.remove(Thread.currentThread());
+            }
+        }
+    }
+
+    private void waitForCompressors(long maxWaitMs) {
+        long deadline = System.currentTimeMillis() + maxWaitMs;
+        while (true) {
+            Thread t;
+            synchronized (compressors) {
+                if (compressors.isEmpty()) return;
+                t = compressors.get(0);
+            }
+            try {
+                if (maxWaitMs <= 0) {
+                    t.join();
+                } else {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) return;
+                    t.join(left);
+                    if (t.isAlive()) return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            synchronized (compressors) {
+                compressors.remove(t);
+            }
+        }
+    }
+
+    private File plainFile(int segment) {
+        return new File(dir, String.format("%s.%06d.txt", base, segment));
+    }
+
+    private File gzFile(int segment) {
+        return new File(dir, gzName(segment));
+    }
+
+    private String gzName(int segment) {
+        return String.format("%s.%06d.txt.gz", base, segment);
+    }
+
+    private static long startTimeOf(File f) {
+        if (!f.exists() || f.length() == 0) return System.currentTimeMillis();
+        try {
+            BasicFileAttributes a = Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+            return Math.min(a.creationTime().toMillis(), a.lastModifiedTime().toMillis());
+        } catch (IOException e) {
+            return f.lastModified();
+        }
+    }
+}
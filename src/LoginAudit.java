@@ -0,0 +1,215 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/** LoginAudit.java – Buffered writer for login_audit.txt with running per-user statistics
+ *
+ *  Lines ("ACTION|username|2026-02-07T14:34:14.506") are queued to a background AsyncLineWriter instead of
+ *  opening the file per event. Every line also updates the per-user aggregates in memory. The aggregates
+ *  are saved to login_audit.sum together with the byte offset they cover, so the next start only reads
+ *  the lines added after that offset.
+ */
+public class LoginAudit {
+    public static final int BURST_FAILURES = 3;             // this many LOGIN_FAILs...
+    public static final long BURST_WINDOW_SECONDS = 300;    // ...within this window count as one burst
+
+    /** Aggregates for one username */
+    public static class UserStats {
+        public String username;
+        public int successes;
+        public int failures;
+        public int otherActions;          // DELETE_ORDERS, RESTORE_ORDERS, UNDO_RESTORE, ...
+        public int bursts;
+        public String lastSeen = "-";
+        public String lastFailure = "-";
+        public String lastBurst = "-";
+        long[] recentFailures = new long[BURST_FAILURES];    // epoch seconds of the failures in the open window
+        int recentCount;
+
+        UserStats(String username) {
+            this.username = username;
+        }
+    }
+
+    private final String path;
+    private final String summaryPath;
+    private final HashMap<String, UserStats> users = new HashMap<String, UserStats>();
+    private AsyncLineWriter writer;
+    private long coveredOffset = 0;       // bytes of login_audit.txt included in the aggregates
+    private int caughtUp = 0;             // lines read at startup (not covered by the saved summary)
+
+    public LoginAudit(String path, String summaryPath) {
+        this.path = path;
+        this.summaryPath = summaryPath;
+    }
+
+    /** Load the saved summary and add the audit lines written after it (all of them if the summary is stale) */
+    public synchronized void open() {
+        long length = new File(path).length();
+        if (!loadSummary() || coveredOffset > length || !endsLine(coveredOffset)) {
+            users.clear();
+            coveredOffset = 0;
+        }
+        try {
+            MappedRecordReader.scan(path, coveredOffset, Long.MAX_VALUE, r -> {
+                apply(r.text(0), r.text(1), r.text(2));
+                caughtUp++;
+            });
+        } catch (Exception e) {
+            // no audit file yet
+        }
+        coveredOffset = length;
+        writer = new AsyncLineWriter(path, "audit-writer");
+    }
+
+    /** Queue one audit line and fold it into the aggregates */
+    public synchronized void record(String action, String username, String time) {
+        String line = action + "|" + username + "|" + time;
+        if (writer.append(line)) {
+            coveredOffset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            apply(action, username, time);
+        }
+    }
+
+    /** Per-user aggregates, most recently seen first (answered from memory, the file is not rescanned) */
+    public synchronized List<UserStats> summary() {
+        ArrayList<UserStats> list = new ArrayList<UserStats>(users.values());
+        Collections.sort(list, (a, b) -> b.lastSeen.compareTo(a.lastSeen));
+        return list;
+    }
+
+    /** Audit lines read at startup because the saved summary did not cover them */
+    public int caughtUpLines() {
+        return caughtUp;
+    }
+
+    public void flush() {
+        if (writer != null) writer.flush();
+    }
+
+    /** Write queued lines, then save the aggregates with the offset they cover */
+    public synchronized void saveSummary() {
+        flush();
+        AtomicSaveGroup group = new AtomicSaveGroup();
+        try {
+            Writer w = group.openWriter(summaryPath);
+            w.write("#COVERED|" + coveredOffset + "\n");
+            for (UserStats s : users.values()) {
+                StringBuilder recent = new StringBuilder();
+                for (int i = 0; i < s.recentCount; i++) {
+                    if (i > 0) recent.append(',');
+                    recent.append(s.recentFailures[i]);
+                }
+                w.write(s.username + "|" + s.successes + "|" + s.failures + "|" + s.otherActions + "|" + s.bursts
+                        + "|" + s.lastSeen + "|" + s.lastFailure + "|" + s.lastBurst + "|" + recent + "\n");
+            }
+            group.commit();
+        } catch (IOException e) {
+            group.abort();   // summary is rebuilt from login_audit.txt next time
+        }
+    }
+
+    public void close() {
+        if (writer == null) return;
+        saveSummary();
+        writer.close();
+    }
+
+    private void apply(String action, String username, String time) {
+        if (username.length() == 0) return;
+        UserStats s = users.get(username);
+        if (s == null) {
+            s = new UserStats(username);
+            users.put(username, s);
+        }
+        if (time.compareTo(s.lastSeen) > 0) s.lastSeen = time;   // ISO times sort as text; "-" sorts first
+        if (action.equals("LOGIN_SUCCESS")) {
+            s.successes++;
+        } else if (action.equals("LOGIN_FAIL")) {
+            s.failures++;
+            s.lastFailure = time;
+            addFailure(s, time);
+        } else {
+            s.otherActions++;
+        }
+    }
+
+    /** Sliding window over the last BURST_FAILURES failures; a full window within BURST_WINDOW_SECONDS is a burst */
+    private void addFailure(UserStats s, String time) {
+        long t;
+        try {
+            t = LocalDateTime.parse(time).toEpochSecond(ZoneOffset.UTC);
+        } catch (Exception e) {
+            return;
+        }
+        if (s.recentCount == BURST_FAILURES) {
+            System.arraycopy(s.recentFailures, 1, s.recentFailures, 0, BURST_FAILURES - 1);
+            s.recentCount--;
+        }
+        s.recentFailures[s.recentCount++] = t;
+        if (s.recentCount == BURST_FAILURES && t - s.recentFailures[0] <= BURST_WINDOW_SECONDS) {
+            s.bursts++;
+            s.lastBurst = time;
+            s.recentCount = 0;      // the next burst needs BURST_FAILURES new failures
+        }
+    }
+
+    /** The covered part of the file must end exactly at a line break (else the file was replaced) */
+    private boolean endsLine(long offset) {
+        if (offset == 0) return true;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(path, "r");
+            try {
+                raf.seek(offset - 1);
+                return raf.read() == '\n';
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean loadSummary() {
+        if (!new File(summaryPath).exists()) return false;
+        final boolean[] ok = { false };
+        try {
+            MappedRecordReader.scan(summaryPath, r -> {
+                if (r.firstChar() == '#') {
+                    if (r.text(0).equals("#COVERED")) {
+                        coveredOffset = r.longValue(1);
+                        ok[0] = true;
+                    }
+                    return;
+                }
+                UserStats s = new UserStats(r.text(0));
+                s.successes = r.intValue(1);
+                s.failures = r.intValue(2);
+                s.otherActions = r.intValue(3);
+                s.bursts = r.intValue(4);
+                s.lastSeen = r.text(5);
+                s.lastFailure = r.text(6);
+                s.lastBurst = r.text(7);
+                String recent = r.text(8);
+                if (recent.length() > 0) {
+                    String[] parts = recent.split(",");
+                    for (int i = 0; i < parts.length && i < BURST_FAILURES; i++) {
+                        s.recentFailures[s.recentCount++] = Long.parseLong(parts[i].trim());
+                    }
+                }
+                users.put(s.username, s);
+            });
+        } catch (Exception e) {
+            return false;
+        }
+        return ok[0];
+    }
+}
@@ -13,9 +13,65 @@ public class Main {
             BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
             // Initialize data persistence (loads data from text files)
             DataPersistence dp = new DataPersistence("data");  // base directory "" = current directory
+            boolean processPending = false;
+            int cardLimit = Integer.MAX_VALUE;
+            int threads = 1;
+            boolean lockFreeStock = false;
+            boolean advanceStatus = false;
+            OrderStatus advanceFrom = null;
+            String fromDate = "";
+            String toDate = "";
+            java.util.ArrayList<String> advanceIds = new java.util.ArrayList<String>();
+            for (int i = 0; i < args.length; i++) {
+                // keep DELIVERED/CANCELLED orders on disk, paged in when needed
+                if (args[i].equals("--tiered-history")) dp.tieredHistory = true;
+                // headless: process every PENDING order, save and exit (no login, no menu)
+                if (args[i].equals("--process-pending")) processPending = true;
+                if (args[i].startsWith("--card-limit=")) cardLimit = Integer.parseInt(args[i].substring("--card-limit=".length()));
+                // --threads=N: process pending orders on N workers (striped stock locks)
+                if (args[i].startsWith("--threads=")) threads = Integer.parseInt(args[i].substring("--threads=".length()));
+                // --lockfree-stock: CAS counters (split for hot items) instead of striped locks
+                if (args[i].equals("--lockfree-stock")) lockFreeStock = true;
+                // headless: --advance-status[=STATUS] [--from-date=D] [--to-date=D] [--ids=O1001,O1002]
+                // moves every matching order one step (PACKED -> SHIPPED -> ...), saves once and exits
+                if (args[i].equals("--advance-status")) advanceStatus = true;
+                if (args[i].startsWith("--advance-status=")) {
+                    advanceStatus = true;
+                    advanceFrom = OrderStatus.parse(args[i].substring("--advance-status=".length()));
+                    if (advanceFrom == null) throw new IllegalArgumentException("unknown status in " + args[i]);
+                }
+                if (args[i].startsWith("--from-date=")) fromDate = args[i].substring("--from-date=".length());
+                if (args[i].startsWith("--to-date=")) toDate = args[i].substring("--to-date=".length());
+                if (args[i].startsWith("--ids=")) {
+                    String[] ids = args[i].substring("--ids=".length()).split(",");
+                    for (int k = 0; k < ids.length; k++) {
+                        if (ids[k].trim().length() > 0) advanceIds.add(ids[k].trim());
+                    }
+                }
+            }
             dp.loadAll();
-            // Initialize logging system
+            // Initialize logging system (background writers; pending log and audit entries are written on exit)
             Log log = new Log(dp);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                log.close();
+                dp.closeLoginAudit();
+                dp.closeInvoices();
+                dp.closeOrderSteps();
+            }));
+            if (processPending) {
+                PaymentPolicy payment = new PaymentService(log).batch(cardLimit);
+                if (threads > 1) {
+                    ConcurrentOrderEngine engine = new ConcurrentOrderEngine(dp, log, threads, lockFreeStock);
+                    Workflow.printBatchResult(engine.processAllPending(payment));
+                } else {
+                    Workflow.printBatchResult(new OrderProcessor(dp, log).processAllPending(payment));
+                }
+                return;
+            }
+            if (advanceStatus) {
+                Workflow.printBulkResult(new BulkStatusUpdate(dp, log).advance(advanceFrom, fromDate, toDate, advanceIds));
+                return;
+            }
             // Create Workflow orchestrator
             Workflow wf = new Workflow(dp, log);
             // Secure Admin Login
@@ -25,9 +81,9 @@ public class Main {
             }
             // Show Admin Dashboard menu (interactive loop)
             wf.adminDashboard(console);
-            // On exit, save all data back to files
+            // On exit, save whatever changed back to files
             dp.saveAll();
-            System.out.print(MINT+"Saved. Bye.\n"+RESET);
+            System.out.print(MINT+"Saved (" + dp.lastFlushCount + " records). Bye.\n"+RESET);
         } catch (Exception e) {
             System.out.print(ROSE+"Fatal Error: " + e.getMessage() + "\n"+RESET);
         }
@@ -0,0 +1,280 @@
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/** MappedRecordReader.java – Scans pipe-delimited data files through a memory-mapped buffer (no split/trim/substring per field) */
+public class MappedRecordReader {
+
+    /** Called once for every non-blank line; read the fields through the reader passed in */
+    public interface RowHandler {
+        void row(MappedRecordReader row) throws Exception;
+    }
+
+    private static final int MAX_FIELDS = 16;                  // extra columns are ignored
+    private static final long WINDOW = 64L * 1024 * 1024;      // map at most 64 MB of the file at a time
+
+    private MappedByteBuffer buf;
+    private long windowStart;                                  // file offset of buf position 0
+    private int lineStart;                                     // trimmed line bounds inside buf
+    private int lineEnd;
+    private int fields;
+    private final int[] fieldStart = new int[MAX_FIELDS];      // raw (untrimmed) field bounds inside buf
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private byte[] scratch = new byte[256];
+
+    private MappedRecordReader() {
+    }
+
+    /** Scan every line of a file. Throws FileNotFoundException if the file does not exist. */
+    public static void scan(String path, RowHandler handler) throws Exception {
+        scan(path, 0, Long.MAX_VALUE, handler);
+    }
+
+    /** Scan only the lines that START inside the byte range [from, to). Splitting a file into
+     *  adjacent ranges therefore visits every line exactly once (used for parallel loading). */
+    public static void scan(String path, long from, long to, RowHandler handler) throws Exception {
+        MappedRecordReader r = new MappedRecordReader();
+        RandomAccessFile raf = new RandomAccessFile(path, "r");
+        try {
+            FileChannel ch = raf.getChannel();
+            long size = ch.size();
+            if (to > size) to = size;
+
+            // a line starts at `from` only if the byte before it is '\n'; otherwise skip the partial line
+            long pos = from;
+            boolean skipPartial = false;
+            if (from > 0) {
+                pos = from - 1;
+                skipPartial = true;
+            }
+            long window = WINDOW;
+
+            while (pos < to) {
+                long len = Math.min(window, size - pos);
+                r.buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                r.windowStart = pos;
+                boolean lastWindow = (pos + len == size);
+
+                int limit = (int) len;
+                int start = 0;
+                int i = 0;
+                if (skipPartial) {
+                    while (i < limit && r.buf.get(i) != '\n') i++;
+                    if (i == limit) {
+                        if (lastWindow) break;
+                        window *= 2;
+                        continue;
+                    }
+                    start = i + 1;
+                    i = start;
+                    skipPartial = false;
+                }
+                boolean done = false;
+                while (i < limit) {
+                    if (r.windowStart + start >= to) {
+                        done = true;      // next line belongs to the following range
+                        break;
+                    }
+                    if (r.buf.get(i) == '\n') {
+                        r.processLine(start, i, handler);
+                        start = i + 1;
+                    }
+                    i++;
+                }
+                if (done) break;
+                if (lastWindow) {
+                    if (start < limit && r.windowStart + start < to) r.processLine(start, limit, handler);  // last line without '\n'
+                    break;
+                }
+                if (start == 0) {
+                    window *= 2;          // one line longer than the window: map a bigger piece
+                } else {
+                    pos += start;         // continue from the first incomplete line
+                    window = WINDOW;
+                }
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    /** Trim a line, split it at '|' and hand it to the handler (blank lines are skipped) */
+    private void processLine(int from, int to, RowHandler handler) throws Exception {
+        while (from < to && buf.get(from) <= ' ') from++;
+        while (to > from && buf.get(to - 1) <= ' ') to--;
+        if (from == to) return;
+
+        lineStart = from;
+        lineEnd = to;
+        fields = 0;
+        int fs = from;
+        for (int i = from; i < to && fields < MAX_FIELDS - 1; i++) {
+            if (buf.get(i) == '|') {
+                fieldStart[fields] = fs;
+                fieldEnd[fields] = i;
+                fields++;
+                fs = i + 1;
+            }
+        }
+        fieldStart[fields] = fs;
+        fieldEnd[fields] = to;
+        fields++;
+
+        // same as String.split: trailing empty fields do not count
+        while (fields > 0 && fieldStart[fields - 1] == fieldEnd[fields - 1]) fields--;
+
+        handler.row(this);
+    }
+
+    /** Number of fields on the current line (like split("\\|").length) */
+    public int fieldCount() {
+        return fields;
+    }
+
+    /** Absolute file offset where the current (trimmed) line starts */
+    public long lineOffset() {
+        return windowStart + lineStart;
+    }
+
+    /** First character of the trimmed line (e.g. '#' for comment/section lines) */
+    public char firstChar() {
+        return (char) (buf.get(lineStart) & 0xFF);
+    }
+
+    /** Whole trimmed line as a String */
+    public String lineText() {
+        return decode(lineStart, lineEnd);
+    }
+
+    /** Trimmed text of field i ("" if the line has fewer fields) */
+    public String text(int i) {
+        if (i >= fields) return "";
+        int a = fieldStart[i];
+        int b = fieldEnd[i];
+        while (a < b && buf.get(a) <= ' ') a++;
+        while (b > a && buf.get(b - 1) <= ' ') b--;
+        return decode(a, b);
+    }
+
+    /** Integer value of field i, decoded straight from the bytes (same rules as DataPersistence.toInt) */
+    public int intValue(int i) {
+        if (i >= fields) return 0;
+        int a = fieldStart[i];
+        int b = fieldEnd[i];
+        while (a < b && buf.get(a) <= ' ') a++;
+        return parseInt(a, b);
+    }
+
+    /** True if trimmed field i is exactly `value` (ASCII compare on the bytes, nothing decoded) */
+    public boolean fieldEquals(int i, String value) {
+        if (i >= fields) return value.length() == 0;
+        int a = fieldStart[i];
+        int b = fieldEnd[i];
+        while (a < b && buf.get(a) <= ' ') a++;
+        while (b > a && buf.get(b - 1) <= ' ') b--;
+        if (b - a != value.length()) return false;
+        for (int k = 0; k < value.length(); k++) {
+            if (buf.get(a + k) != value.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    /** Long value of field i (e.g. epoch-millis timestamps), same rules as intValue */
+    public long longValue(int i) {
+        if (i >= fields) return 0;
+        int a = fieldStart[i];
+        int b = fieldEnd[i];
+        while (a < b && buf.get(a) <= ' ') a++;
+        boolean neg = false;
+        if (a < b && buf.get(a) == '-') {
+            neg = true;
+            a++;
+        }
+        long value = 0;
+        for (int k = a; k < b; k++) {
+            byte c = buf.get(k);
+            if (c >= '0' && c <= '9') value = value * 10 + (c - '0');
+        }
+        return neg ? -value : value;
+    }
+
+    /** Parse field i as an item list ("P01x2,P03x1" or "P01:2,P03:1") into the order */
+    public void itemsInto(int i, Order o) {
+        if (i >= fields || o == null) return;
+        int end = fieldEnd[i];
+        int tok = fieldStart[i];
+        while (tok <= end) {
+            int comma = tok;
+            while (comma < end && buf.get(comma) != ',') comma++;
+            addItem(tok, comma, o);
+            tok = comma + 1;
+        }
+    }
+
+    private void addItem(int from, int to, Order o) {
+        while (from < to && buf.get(from) <= ' ') from++;
+        while (to > from && buf.get(to - 1) <= ' ') to--;
+        if (from == to) return;
+
+        // "PIDxQTY" takes priority over "PID:QTY", exactly like parseItemsIntoOrder
+        int sep = pairSeparator(from, to, (byte) 'x');
+        if (sep == -2) sep = pairSeparator(from, to, (byte) ':');
+        if (sep < 0) return;
+
+        int pe = sep;
+        while (pe > from && buf.get(pe - 1) <= ' ') pe--;
+        if (pe == from) return;
+        int qs = sep + 1;
+        while (qs < to && buf.get(qs) <= ' ') qs++;
+        int qty = parseInt(qs, to);
+        if (qty > 0) {
+            o.addItem(new Item(decode(from, pe), qty));
+        }
+    }
+
+    /** Position of the single separator splitting [from,to) into two parts (split() semantics:
+     *  trailing separators are ignored). -2 if the separator does not occur, -1 if it is not a pair. */
+    private int pairSeparator(int from, int to, byte sep) {
+        int found = -1;
+        int count = 0;
+        for (int k = from; k < to; k++) {
+            if (buf.get(k) == sep) {
+                count++;
+                if (found == -1) found = k;
+            }
+        }
+        if (count == 0) return -2;
+        int e = to;
+        while (e > from && buf.get(e - 1) == sep) e--;
+        int inside = 0;
+        for (int k = from; k < e; k++) {
+            if (buf.get(k) == sep) inside++;
+        }
+        return (inside == 1 ? found : -1);
+    }
+
+    private int parseInt(int a, int b) {
+        if (a >= b) return 0;
+        boolean neg = false;
+        if (buf.get(a) == '-') {
+            neg = true;
+            a++;
+        }
+        int value = 0;
+        for (int k = a; k < b; k++) {
+            byte c = buf.get(k);
+            if (c >= '0' && c <= '9') value = value * 10 + (c - '0');
+            // any other character (commas, spaces, "# comments") is ignored, as in toInt
+        }
+        return neg ? -value : value;
+    }
+
+    private String decode(int a, int b) {
+        int len = b - a;
+        if (len <= 0) return "";
+        if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+        buf.get(a, scratch, 0, len);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+}
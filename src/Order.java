@@ -3,7 +3,7 @@ public class Order {
     public String date;           // e.g., "2026-02-01"
     public String address;
     public String paymentMode;
-    public String status;
+    public OrderStatus status;
     public Item[] items = new Item[10];  // max 10 items per order for simplicity
     public int itemCount = 0;
     public int totalAmount;
@@ -11,7 +11,7 @@ public class Order {
     public String trackingId;
 
     public Order() {
-        this.status = "PENDING";
+        this.status = OrderStatus.PENDING;
         this.cancelReason = "";
         this.trackingId = "";
         this.address = "";
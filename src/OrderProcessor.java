@@ -0,0 +1,202 @@
+/** OrderProcessor.java – Runs PENDING orders through stock check, reservation, payment and invoicing
+ *
+ *  process() handles one order (used by the dashboard flows); processAllPending() runs every PENDING order
+ *  in one pass without prompts and saves once at the end.
+ */
+public class OrderProcessor {
+    private static final int FLUSH_EVERY = 4096;      // orders between log flushes in a batch (keeps the log queues from overflowing)
+
+    /** Outcome counts of one processAllPending() run */
+    public static class BatchResult {
+        public int pending;
+        public int packed;
+        public int stockShortage;
+        public int paymentDeclined;
+        public int invalidProduct;
+        public int reservationExpired; // hold expired during payment and the stock was sold meanwhile (payment voided)
+        public int duplicateInvoices;  // invoice IDs that already existed (not written again)
+        public int saved;            // records written by the final save
+        public long nanos;
+
+        public long ordersPerSecond() {
+            return nanos > 0 ? (long) (pending * 1e9 / nanos) : 0;
+        }
+    }
+
+    private final DataPersistence dp;
+    private final Log log;
+    private final Inventory inventory;  // Product.stock behind striped locks (safe next to a concurrent batch)
+    private final ReservationLedger reservations;   // stock held while payment is pending, released on expiry
+    private boolean quiet = false;    // batch mode: no per-order console output
+
+    public OrderProcessor(DataPersistence dp, Log log) {
+        this.dp = dp;
+        this.log = log;
+        this.inventory = new StripedLockInventory(dp);
+        this.reservations = new ReservationLedger(dp, log, inventory, ReservationLedger.DEFAULT_TTL_MS);
+    }
+
+    /** Process one PENDING order. Returns true if it ends PACKED; otherwise it is CANCELLED with a reason.
+     *  Steps recorded in the StepLedger by an earlier run (stock taken, payment approved, invoice written)
+     *  are not done again. */
+    public boolean process(Order order, PaymentPolicy payment) throws Exception {
+        if (order == null || order.status != OrderStatus.PENDING) return false;
+        dp.markOrderDirty(order);   // status/total change below (new orders are marked by addOrder)
+        StepLedger steps = (ownsId(dp, order) ? dp.orderSteps() : null);   // duplicate order IDs are not tracked
+
+        // Step 1+2: Check and hold all items in one step (no gap between check and deduction);
+        // the hold expires if payment is not settled within the TTL. Skipped if a previous run's stock is saved.
+        boolean stockTaken = (steps != null && steps.done(order, StepLedger.STOCK));
+        if (!stockTaken) {
+            String shortId = reservations.hold(order);
+            if (shortId != null) {
+                dp.setStatus(order, OrderStatus.CANCELLED);
+                if (dp.findProductById(shortId) == null) {
+                    order.cancelReason = "Invalid product " + shortId;
+                    log.write(order.orderId, "Order cancelled - " + order.cancelReason);
+                    return false;
+                }
+                order.cancelReason = "Inventory Shortage: " + shortId;
+                log.write(order.orderId, "Order cancelled -" + order.cancelReason);
+                return false;
+            }
+            dp.markProductsDirty();
+            log.write(order.orderId, "Inventory OK – stock reserved");
+        }
+
+        // Step 3: Calculate total price
+        int total = 0;
+        for (int i = 0; i < order.itemCount; i++) {
+            Item it = order.items[i];
+            Product prod = dp.findProductById(it.productId);
+            int price = (prod != null ? prod.price : 0);
+            total += price * it.quantity;
+        }
+        order.totalAmount = total;
+
+        // Step 4: Payment (an approval recorded by an earlier run is not asked for again)
+        boolean paymentSuccess = (steps != null && steps.done(order, StepLedger.PAYMENT)) || payment.authorize(order);
+
+        // Step 5: Rollback stock if payment fails (exactly what was reserved)
+        if (!paymentSuccess) {
+            if (stockTaken) inventory.release(order);
+            else reservations.release(order);
+            dp.markProductsDirty();
+            dp.setStatus(order, OrderStatus.CANCELLED);
+            order.cancelReason = "Payment Declined";
+            log.write(order.orderId, "Order cancelled - " + order.cancelReason);
+            return false;
+        }
+        if (steps != null) steps.record(order, StepLedger.PAYMENT, "");
+
+        // Step 5b: Payment approved: the hold becomes a sale. If it expired while payment was pending, the
+        // stock went back on sale, so take it again (or cancel if it has been sold meanwhile).
+        if (!stockTaken) {
+            if (!reservations.confirm(order)) {
+                String again = inventory.reserve(order);
+                if (again != null) {
+                    dp.setStatus(order, OrderStatus.CANCELLED);
+                    order.cancelReason = "Reservation expired: " + again;
+                    voidPayment(order, steps);
+                    log.write(order.orderId, "Order cancelled - " + order.cancelReason);
+                    return false;
+                }
+                dp.markProductsDirty();
+            }
+            if (steps != null) steps.record(order, StepLedger.STOCK, "");
+        }
+
+        // Step 6: Mark as PACKED and generate properly formatted invoice (once per order)
+        dp.setStatus(order, OrderStatus.PACKED);
+        log.write(order.orderId, "Status changed to PACKED");
+        if (steps == null || !steps.done(order, StepLedger.INVOICE)) {
+            writeInvoice(order);
+            if (steps != null) steps.record(order, StepLedger.INVOICE, "");
+        }
+        return true;
+    }
+
+    /** Process every PENDING order with the given (non-interactive) payment policy, then save once */
+    public BatchResult processAllPending(PaymentPolicy payment) throws Exception {
+        BatchResult r = new BatchResult();
+        long t0 = System.nanoTime();
+        quiet = true;
+        InvoiceLedger invoices = dp.invoices();
+        int duplicatesBefore = invoices.suppressedCount();
+        try {
+            int count = dp.orderCount;           // PENDING orders are always resident (never in tiered history)
+            for (int i = 0; i < count; i++) {
+                Order o = dp.orders[i];
+                if (o == null || o.status != OrderStatus.PENDING) continue;
+                r.pending++;
+                if (process(o, payment)) {
+                    r.packed++;
+                } else if (o.cancelReason.startsWith("Inventory Shortage")) {
+                    r.stockShortage++;
+                } else if (o.cancelReason.startsWith("Invalid product")) {
+                    r.invalidProduct++;
+                } else if (o.cancelReason.startsWith("Reservation expired")) {
+                    r.reservationExpired++;
+                } else {
+                    r.paymentDeclined++;
+                }
+                if (r.pending % FLUSH_EVERY == 0) log.flush();
+            }
+        } finally {
+            quiet = false;
+            invoices.flush();
+        }
+        r.duplicateInvoices = invoices.suppressedCount() - duplicatesBefore;
+        dp.saveAll();
+        r.saved = dp.lastFlushCount;
+        r.nanos = System.nanoTime() - t0;
+        return r;
+    }
+
+    /** Stock holds of orders waiting for payment (available-to-promise, units on hold) */
+    public ReservationLedger reservations() {
+        return reservations;
+    }
+
+    /** ✅ Format: INV-YYYYMM-#### */
+    static String invoiceId(Order order) {
+        String ym = order.date.substring(0, 7).replace("-", ""); // "202602"
+        String orderNum = order.orderId.substring(1); // drop 'O' → "1005"
+        return "INV-" + ym + "-" + orderNum;
+    }
+
+    /** True if the order is the one its ID resolves to (orders.txt can hold two rows with the same ID) */
+    static boolean ownsId(DataPersistence dp, Order order) {
+        return dp.findOrderById(order.orderId) == order;
+    }
+
+    /** Tracking ID assigned when an order is SHIPPED: O1005 -> TRK1005 */
+    static String trackingId(Order order) {
+        return "TRK" + order.orderId.substring(1);
+    }
+
+    /** The order was cancelled after its payment was approved: void the approval (nothing is captured for a
+     *  cancelled order) and record that, so the approval is not left looking like money taken */
+    private void voidPayment(Order order, StepLedger steps) {
+        log.write(order.orderId, "PAYMENT VOID (" + safeMode(order) + " BDT " + order.totalAmount + " released – "
+                + order.cancelReason + ")");
+        if (steps != null) steps.record(order, StepLedger.PAYMENT_VOID, order.cancelReason);
+        if (!quiet) System.out.print("Payment of BDT " + order.totalAmount + " voided (" + order.cancelReason + ").\n");
+    }
+
+    private static String safeMode(Order order) {
+        return (order.paymentMode == null ? "" : order.paymentMode);
+    }
+
+    /** Queue the invoice line; an ID that was already invoiced is logged and not written again */
+    private void writeInvoice(Order order) {
+        String invoiceId = invoiceId(order);
+        if (!dp.invoices().append(invoiceId, order.totalAmount)) {
+            log.write(order.orderId, "Invoice " + invoiceId + " already exists – duplicate not written");
+            if (!quiet) System.out.print("Invoice " + invoiceId + " already exists; not written again.\n");
+            return;
+        }
+        // (Optional) Show invoice ID to admin
+        if (!quiet) System.out.print("Invoice generated: " + invoiceId + "\n");
+    }
+}
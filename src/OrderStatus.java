@@ -0,0 +1,91 @@
+/** OrderStatus.java – Order lifecycle states and the transition table between them
+ *
+ *  PENDING -> PACKED -> SHIPPED -> OUT_FOR_DELIVERY -> DELIVERED; PENDING and PACKED orders can also be
+ *  CANCELLED (nothing is cancelled once it has left the warehouse). Status changes go through
+ *  canMoveTo()/next() instead of string comparisons, so status checks are reference compares and a set
+ *  of statuses fits in one int mask (bit = ordinal).
+ *  orders.txt keeps storing name(); parse() also accepts older spellings ("Delivered", "out for delivery").
+ */
+public enum OrderStatus {
+    PENDING,
+    PACKED,
+    SHIPPED,
+    OUT_FOR_DELIVERY,
+    DELIVERED,
+    CANCELLED;
+
+    private static final OrderStatus[] VALUES = values();
+    public static final int ALL = (1 << VALUES.length) - 1;
+
+    // NEXT[s] = the step a manual status update advances s to (null = none; PENDING is packed by OrderProcessor)
+    private static final OrderStatus[] NEXT = new OrderStatus[VALUES.length];
+    // ALLOWED[s] = mask of the statuses s may move to
+    private static final int[] ALLOWED = new int[VALUES.length];
+
+    static {
+        allow(PENDING, PACKED, CANCELLED);
+        allow(PACKED, SHIPPED, CANCELLED);
+        allow(SHIPPED, OUT_FOR_DELIVERY);
+        allow(OUT_FOR_DELIVERY, DELIVERED);
+        NEXT[PACKED.ordinal()] = SHIPPED;
+        NEXT[SHIPPED.ordinal()] = OUT_FOR_DELIVERY;
+        NEXT[OUT_FOR_DELIVERY.ordinal()] = DELIVERED;
+    }
+
+    private static void allow(OrderStatus from, OrderStatus... to) {
+        for (OrderStatus s : to) ALLOWED[from.ordinal()] |= s.bit();
+    }
+
+    /** This status as a one-bit mask */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /** Whether the status is in the given mask */
+    public boolean in(int mask) {
+        return (mask & bit()) != 0;
+    }
+
+    public boolean canMoveTo(OrderStatus target) {
+        return target != null && target.in(ALLOWED[ordinal()]);
+    }
+
+    /** Next step of a manual status update, or null if the order cannot be advanced by hand */
+    public OrderStatus next() {
+        return NEXT[ordinal()];
+    }
+
+    /** DELIVERED and CANCELLED orders never change again */
+    public boolean isFinal() {
+        return ALLOWED[ordinal()] == 0;
+    }
+
+    /** Parse a stored or typed status; case, spaces and dashes are ignored. Null if unknown. */
+    public static OrderStatus parse(String text) {
+        if (text == null) return null;
+        String s = text.trim().toUpperCase().replace(' ', '_').replace('-', '_');
+        for (OrderStatus st : VALUES) {
+            if (st.name().equals(s)) return st;
+        }
+        if (s.equals("CANCELED")) return CANCELLED;
+        return null;
+    }
+
+    /** Mask of the statuses whose name contains the query (case-insensitive); 0 if none */
+    public static int matching(String query) {
+        String q = (query == null ? "" : query.trim().toUpperCase().replace(' ', '_'));
+        int mask = 0;
+        for (OrderStatus st : VALUES) {
+            if (st.name().contains(q)) mask |= st.bit();
+        }
+        return mask;
+    }
+
+    public static OrderStatus of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
+}
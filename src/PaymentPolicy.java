@@ -0,0 +1,5 @@
+/** PaymentPolicy.java – Decides (and logs) whether an order's payment goes through during processing */
+public interface PaymentPolicy {
+    /** True if the payment for this order (totalAmount already set) is approved */
+    boolean authorize(Order order) throws Exception;
+}
@@ -34,6 +34,44 @@ public class PaymentService {
         return false;
     }
 
+    /** Ask the admin on the console (MockCard approve Y/N) – the normal interactive flow */
+    public PaymentPolicy interactive(BufferedReader console) {
+        return order -> processPayment(order, console);
+    }
+
+    /** No console: COD passes, everything else is declined (simulation without prompts) */
+    public PaymentPolicy autoDecline() {
+        return order -> {
+            if (safe(order.paymentMode).equalsIgnoreCase("COD")) {
+                log.write(order.orderId, "PAYMENT OK (COD)");
+                return true;
+            }
+            log.write(order.orderId, "PAYMENT FAIL (Auto decline for simulation)");
+            return false;
+        };
+    }
+
+    /** Headless batch processing: COD passes, MockCard is approved up to cardLimit (BDT), anything else fails */
+    public PaymentPolicy batch(int cardLimit) {
+        return order -> {
+            String mode = safe(order.paymentMode);
+            if (mode.equalsIgnoreCase("COD")) {
+                log.write(order.orderId, "PAYMENT OK (Cash on Delivery)");
+                return true;
+            }
+            if (mode.equalsIgnoreCase("MockCard")) {
+                if (order.totalAmount <= cardLimit) {
+                    log.write(order.orderId, "PAYMENT OK (MockCard auto-approved in batch)");
+                    return true;
+                }
+                log.write(order.orderId, "PAYMENT FAIL (MockCard over batch limit BDT " + cardLimit + ")");
+                return false;
+            }
+            log.write(order.orderId, "PAYMENT FAIL (Unknown payment mode: " + mode + ")");
+            return false;
+        };
+    }
+
     private String safe(String s) {
         if (s == null) return "";
         return s.trim();
@@ -0,0 +1,102 @@
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** RecentEvents.java – Fixed-size in-memory ring of the most recent log events
+ *
+ *  One writer (Log.write is synchronized) copies each event's fields into preallocated slot arrays, so the ring
+ *  itself allocates nothing per event and holds no reference to the LogEvent afterwards. (Log.write is not
+ *  allocation-free: EventLog builds a LogEvent and its events.txt line for every entry.)
+ *  Readers take no lock: every slot has a stamp that is odd while the slot is being written and
+ *  2 * (sequence + 1) once event `sequence` is complete, so a reader can tell a torn or overwritten slot
+ *  and skip it.
+ */
+public class RecentEvents {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int mask;
+    private final long[] times;
+    private final String[] orderIds;
+    private final String[] types;
+    private final String[] admins;
+    private final String[] details;
+    private final AtomicLongArray stamps;
+    private volatile long published = 0;     // events completely written so far
+
+    /** capacity is rounded up to a power of two */
+    public RecentEvents(int capacity) {
+        int size = 2;
+        while (size < capacity) size <<= 1;
+        mask = size - 1;
+        times = new long[size];
+        orderIds = new String[size];
+        types = new String[size];
+        admins = new String[size];
+        details = new String[size];
+        stamps = new AtomicLongArray(size);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /** Store one event, overwriting the oldest (single writer only) */
+    public void add(long time, String orderId, String type, String admin, String detail) {
+        long seq = published;
+        int slot = (int) (seq & mask);
+        stamps.set(slot, 2 * seq + 1);            // odd: slot is being written
+        VarHandle.releaseFence();                 // ...and readers see that before any of the new fields
+        times[slot] = time;
+        orderIds[slot] = orderId;
+        types[slot] = type;
+        admins[slot] = admin;
+        details[slot] = detail;
+        stamps.set(slot, 2 * seq + 2);            // volatile write publishes the fields above
+        published = seq + 1;
+    }
+
+    public void add(LogEvent e) {
+        add(e.time, e.orderId, e.type, e.admin, e.detail);
+    }
+
+    /** Up to `max` most recent events, oldest first; orderKey = canonical Order ID or "ADMIN" (null = all).
+     *  Never blocks the writer; events overwritten while being read are left out. */
+    public List<LogEvent> recent(int max, String orderKey) {
+        ArrayList<LogEvent> out = new ArrayList<LogEvent>();
+        long end = published;
+        long start = Math.max(0, end - capacity());
+        for (long seq = end - 1; seq >= start && out.size() < max; seq--) {
+            int slot = (int) (seq & mask);
+            long expected = 2 * seq + 2;
+            if (stamps.get(slot) != expected) break;     // already overwritten by a newer event: older ones are too
+            long time = times[slot];
+            String orderId = orderIds[slot];
+            String type = types[slot];
+            String admin = admins[slot];
+            String detail = details[slot];
+            VarHandle.acquireFence();                    // the field reads above happen before the re-check
+            if (stamps.get(slot) != expected) break;
+            if (orderKey != null && !orderKey.equals(orderId)) continue;
+            out.add(new LogEvent(time, orderId, type, admin, detail));
+        }
+        Collections.reverse(out);
+        return out;
+    }
+
+    /** Forget everything (Clear Logs) (single writer only) */
+    public void clear() {
+        long end = published;
+        long start = Math.max(0, end - capacity());
+        for (long seq = start; seq < end; seq++) {
+            int slot = (int) (seq & mask);
+            stamps.set(slot, 0);
+            orderIds[slot] = null;
+            types[slot] = null;
+            admins[slot] = null;
+            details[slot] = null;
+        }
+        // sequence numbers keep growing so stamps written before the clear can never match again
+    }
+}
@@ -0,0 +1,148 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** ReservationLedger.java – Time-limited stock holds per order, released by a background sweeper
+ *
+ *  hold() takes the order's stock out of the Inventory and records a hold that expires after the TTL.
+ *  The order's flow then either confirm()s it (payment approved: the stock stays sold) or release()s it.
+ *  A hold that is still open when it expires (e.g. a MockCard prompt nobody answered) is released by the
+ *  "reservation-sweeper" thread, which waits on a DelayQueue ordered by expiry time. Each hold changes
+ *  state exactly once (HELD -> CONFIRMED / RELEASED / EXPIRED), so the sweeper and the order's flow never
+ *  both give stock back. Units on hold are counted per product, so available-to-promise is a plain read.
+ */
+public class ReservationLedger {
+    public static final long DEFAULT_TTL_MS = 15 * 60 * 1000L;
+
+    private static final int HELD = 0;
+    private static final int CONFIRMED = 1;
+    private static final int RELEASED = 2;
+    private static final int EXPIRED = 3;
+
+    /** One order's hold; sorted by expiry in the DelayQueue */
+    private static final class Hold implements Delayed {
+        final Order order;
+        final long expiresAt;            // System.nanoTime() deadline
+        final AtomicInteger state = new AtomicInteger(HELD);
+
+        Hold(Order order, long expiresAt) {
+            this.order = order;
+            this.expiresAt = expiresAt;
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(expiresAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        public int compareTo(Delayed other) {
+            return Long.compare(expiresAt, ((Hold) other).expiresAt);
+        }
+    }
+
+    private final DataPersistence dp;
+    private final Log log;
+    private final Inventory inventory;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<Order, Hold> holds = new ConcurrentHashMap<Order, Hold>();   // open holds (Order compares by identity)
+    private final ConcurrentHashMap<String, AtomicInteger> heldUnits = new ConcurrentHashMap<String, AtomicInteger>();   // product -> units on hold
+    private final DelayQueue<Hold> expiries = new DelayQueue<Hold>();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private Thread sweeper;
+
+    public ReservationLedger(DataPersistence dp, Log log, Inventory inventory, long ttlMillis) {
+        this.dp = dp;
+        this.log = log;
+        this.inventory = inventory;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /** Reserve the order's items and start its hold. Returns null on success, otherwise the Product ID
+     *  that could not be covered (nothing is held then). An order has at most one open hold. */
+    public String hold(Order order) {
+        if (holds.containsKey(order)) return null;        // already held (e.g. a retried step)
+        String shortId = inventory.reserve(order);
+        if (shortId != null) return shortId;
+        Hold h = new Hold(order, System.nanoTime() + ttlNanos);
+        holds.put(order, h);
+        addHeld(order, 1);
+        startSweeper();
+        expiries.add(h);
+        return null;
+    }
+
+    /** Turn the hold into a sale. False if there was no open hold (it expired and the stock went back). */
+    public boolean confirm(Order order) {
+        return end(order, CONFIRMED) != null;
+    }
+
+    /** Give the held stock back now (payment declined, order cancelled) */
+    public void release(Order order) {
+        Hold h = end(order, RELEASED);
+        if (h != null) inventory.release(h.order);
+    }
+
+    /** Units of the product currently on hold */
+    public int held(String productId) {
+        AtomicInteger n = heldUnits.get(productId);
+        return n == null ? 0 : n.get();
+    }
+
+    /** Stock that can still be promised to new orders (held units are already taken out) */
+    public int availableToPromise(String productId) {
+        return inventory.available(productId);
+    }
+
+    public int openHolds() {
+        return holds.size();
+    }
+
+    public long expiredCount() {
+        return expiredCount.get();
+    }
+
+    private Hold end(Order order, int newState) {
+        Hold h = holds.get(order);
+        if (h == null || !h.state.compareAndSet(HELD, newState)) return null;
+        finish(h, false);
+        expiries.remove(h);          // the queue only holds open holds, so this stays short
+        return h;
+    }
+
+    /** Bookkeeping after a hold left HELD (the caller won the state change) */
+    private void finish(Hold h, boolean giveBack) {
+        holds.remove(h.order, h);
+        addHeld(h.order, -1);
+        if (giveBack) inventory.release(h.order);
+    }
+
+    private synchronized void startSweeper() {
+        if (sweeper != null) return;
+        sweeper = new Thread(() -> {
+            try {
+                while (true) {
+                    Hold h = expiries.take();
+                    if (!h.state.compareAndSet(HELD, EXPIRED)) continue;
+                    finish(h, true);
+                    expiredCount.incrementAndGet();
+                    dp.markProductsDirty();
+                    log.write(h.order.orderId, "Reservation expired – stock released");
+                }
+            } catch (InterruptedException e) {
+                // daemon thread: ends with the JVM
+            }
+        }, "reservation-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    private void addHeld(Order order, int sign) {
+        for (int i = 0; i < order.itemCount; i++) {
+            Item it = order.items[i];
+            if (it == null) continue;
+            heldUnits.computeIfAbsent(it.productId, k -> new AtomicInteger()).addAndGet(sign * it.quantity);
+        }
+    }
+}
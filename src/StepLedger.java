@@ -0,0 +1,183 @@
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/** StepLedger.java – Durable record of the processing steps each order has already been through
+ *
+ *  Lines ("O1006|2026-02-03/5f1c2a9e|PAYMENT|") are queued to order_steps.txt through an AsyncLineWriter
+ *  and folded into one bit mask per order instance in memory, so "was this step done?" is a map lookup.
+ *  An order that is processed again (a batch re-run after a crash, a second retry) skips the steps that
+ *  already happened instead of charging, taking stock or invoicing twice.
+ *  Order IDs get reused (deleted history, restored archives, duplicate rows), so a record only counts for
+ *  the order it was written for: the instance field is the order date plus a CRC32 of its payment mode,
+ *  address and items, and a new order that merely has the same ID starts with no steps done.
+ *  FORGET drops one instance's steps (order archived); CLEAR drops everything (order history deleted).
+ *  PAYMENT_VOID takes back a PAYMENT (the order was cancelled after approval; nothing is to be captured).
+ *  Stock is only taken for good once products.txt is saved, so STOCK steps count only up to the offset
+ *  of this file recorded in products.steps (saved in the same AtomicSaveGroup as products.txt);
+ *  STOCK lines after it belong to stock changes that never reached the disk; open() voids them (VOID line)
+ *  so that a later save, whose offset lies past them, does not make them count after all.
+ */
+public class StepLedger {
+    public static final int STOCK = 1;       // stock taken for the order (sale confirmed)
+    public static final int PAYMENT = 2;     // payment authorized
+    public static final int INVOICE = 4;     // invoice line written
+    public static final int RETRY = 8;       // cancelled order placed again (detail = the new order ID)
+    private static final int FORGET = 16;    // drop the instance's steps
+    private static final int CLEAR = 32;     // drop every order's steps (key "*")
+    private static final int VOID = 64;      // an earlier STOCK line of the instance did not count
+    public static final int PAYMENT_VOID = 128;   // approved payment voided (order cancelled after approval; detail = reason)
+    private static final String[] NAMES = { "STOCK", "PAYMENT", "INVOICE", "RETRY", "FORGET", "CLEAR", "VOID", "PAYMENT_VOID" };
+
+    private final String path;
+    private final DataPersistence dp;
+    private final HashMap<String, Integer> done = new HashMap<String, Integer>();        // "key|instance" -> step bits
+    private final HashMap<String, String> retriedAs = new HashMap<String, String>();     // "key|instance" -> new order ID
+    private AsyncLineWriter writer;
+    private long writtenBytes = 0;       // size of order_steps.txt once the queued lines are written
+    private int unsavedStock = 0;        // STOCK lines ignored at open (their stock was never saved)
+
+    public StepLedger(String path, DataPersistence dp) {
+        this.path = path;
+        this.dp = dp;
+    }
+
+    /** Load the recorded steps. stockCovered = offset recorded in products.steps (0 if none). */
+    public synchronized void open(long stockCovered) {
+        long length = new File(path).length();
+        final long covered = Math.min(stockCovered, length);
+        final ArrayList<String> unsaved = new ArrayList<String>();
+        try {
+            MappedRecordReader.scan(path, r -> {
+                if (r.fieldCount() < 3) return;
+                int step = stepOf(r.text(2));
+                if (step == 0) return;      // unknown, or a record from before instances were written
+                String id = r.text(0) + "|" + r.text(1);
+                if (step == STOCK && r.lineOffset() >= covered) {
+                    unsaved.add(id);
+                    return;
+                }
+                mark(id, step, r.text(3));
+            });
+        } catch (Exception e) {
+            // no steps recorded yet
+        }
+        writtenBytes = length;
+        writer = new AsyncLineWriter(path, "steps-writer");
+        unsavedStock = unsaved.size();
+        for (int i = 0; i < unsaved.size(); i++) write(unsaved.get(i), VOID, "");
+    }
+
+    public synchronized boolean done(Order order, int step) {
+        Integer bits = done.get(idOf(order));
+        return bits != null && (bits & step) != 0;
+    }
+
+    /** Record a finished step (once: a step that is already recorded is not written again) */
+    public synchronized void record(Order order, int step, String detail) {
+        if (step != RETRY && done(order, step)) return;
+        write(idOf(order), step, detail);
+    }
+
+    /** Order ID the cancelled order was last re-placed as (null if it was never retried) */
+    public synchronized String retriedAs(Order order) {
+        return retriedAs.get(idOf(order));
+    }
+
+    /** The order left the order list (archived): its steps no longer apply to anything */
+    public synchronized void forget(Order order) {
+        String id = idOf(order);
+        if (done.containsKey(id)) write(id, FORGET, "");
+    }
+
+    /** The whole order history was deleted: no recorded step applies any more */
+    public synchronized void clear() {
+        if (!done.isEmpty()) write("*|", CLEAR, "");
+    }
+
+    /** STOCK lines that were ignored at open because products.txt was not saved after them */
+    public synchronized int unsavedStockSteps() {
+        return unsavedStock;
+    }
+
+    /** Write every queued line, force the file to disk and return the size that is now durable
+     *  (the offset products.steps may claim). Throws if the file cannot be synced. */
+    public synchronized long syncedBytes() throws java.io.IOException {
+        writer.flush();
+        long onDisk = new File(path).length();   // measured before the sync, so all of it is covered
+        writer.force();
+        return Math.min(writtenBytes, onDisk);
+    }
+
+    public void flush() {
+        if (writer != null) writer.flush();
+    }
+
+    public void close() {
+        if (writer != null) writer.close();
+    }
+
+    /** Instance field of an order: date + hash of what was ordered and how it is paid and delivered */
+    static String instanceOf(Order order) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(order.paymentMode).append('|').append(order.address);
+        for (int i = 0; i < order.itemCount; i++) {
+            Item it = order.items[i];
+            if (it != null) sb.append('|').append(it.productId).append('x').append(it.quantity);
+        }
+        CRC32 crc = new CRC32();
+        byte[] b = sb.toString().getBytes(StandardCharsets.UTF_8);
+        crc.update(b, 0, b.length);
+        return (order.date == null ? "" : order.date) + "/" + Long.toHexString(crc.getValue());
+    }
+
+    private void write(String id, int step, String detail) {
+        String line = id + "|" + NAMES[Integer.numberOfTrailingZeros(step)] + "|" + (detail == null ? "" : detail);
+        while (!writer.append(line)) {
+            writer.flush();        // queue full: wait rather than lose the record
+        }
+        writtenBytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        mark(id, step, detail);
+    }
+
+    private void mark(String id, int step, String detail) {
+        if (step == CLEAR) {
+            done.clear();
+            retriedAs.clear();
+            return;
+        }
+        if (step == FORGET) {
+            done.remove(id);
+            retriedAs.remove(id);
+            return;
+        }
+        if (step == VOID) {
+            Integer bits = done.get(id);
+            if (bits != null) done.put(id, bits & ~STOCK);
+            return;
+        }
+        if (step == PAYMENT_VOID) {
+            Integer bits = done.get(id);
+            done.put(id, ((bits == null ? 0 : bits) & ~PAYMENT) | PAYMENT_VOID);
+            return;
+        }
+        Integer bits = done.get(id);
+        done.put(id, (bits == null ? 0 : bits) | step);
+        if (step == RETRY) retriedAs.put(id, detail);
+    }
+
+    /** "O1006|2026-02-03/5f1c2a9e": canonical order key + instance */
+    private String idOf(Order order) {
+        String key = dp.orderKey(order.orderId);
+        return (key.length() == 0 ? order.orderId : key) + "|" + instanceOf(order);
+    }
+
+    private static int stepOf(String name) {
+        for (int i = 0; i < NAMES.length; i++) {
+            if (NAMES[i].equals(name)) return 1 << i;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/** StripedLockInventory.java – Inventory over Product.stock guarded by locks striped by Product ID
+ *
+ *  An order locks the stripes of all its products in ascending stripe order (so two orders can never wait
+ *  on each other in a cycle), checks the summed quantity per product, and only then deducts. Orders on
+ *  disjoint products mostly take different stripes and run in parallel.
+ */
+public class StripedLockInventory implements Inventory {
+    public static final int STRIPES = 64;
+
+    private final DataPersistence dp;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public StripedLockInventory(DataPersistence dp) {
+        this.dp = dp;
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    public String reserve(Order order) {
+        Demand d = demandOf(order);
+        if (d.missing != null) return d.missing;
+        lockAll(d);
+        try {
+            for (int i = 0; i < d.count; i++) {
+                if (d.products[i].stock < d.qty[i]) return d.products[i].productId;
+            }
+            for (int i = 0; i < d.count; i++) {
+                d.products[i].stock -= d.qty[i];
+            }
+            return null;
+        } finally {
+            unlockAll(d);
+        }
+    }
+
+    public void release(Order order) {
+        Demand d = demandOf(order);
+        lockAll(d);
+        try {
+            for (int i = 0; i < d.count; i++) {
+                d.products[i].stock += d.qty[i];
+            }
+        } finally {
+            unlockAll(d);
+        }
+    }
+
+    public int available(String productId) {
+        Product p = dp.findProductById(productId);
+        if (p == null) return 0;
+        ReentrantLock lock = locks[stripeOf(p)];
+        lock.lock();
+        try {
+            return p.stock;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Per-product totals of one order (the same product may appear on several item lines) */
+    private static class Demand {
+        Product[] products;
+        int[] qty;
+        int count;
+        int[] stripes;        // distinct stripes, ascending
+        int stripeCount;
+        String missing;       // Product ID not in the catalog
+    }
+
+    private Demand demandOf(Order order) {
+        Demand d = new Demand();
+        d.products = new Product[order.itemCount];
+        d.qty = new int[order.itemCount];
+        for (int i = 0; i < order.itemCount; i++) {
+            Item it = order.items[i];
+            if (it == null) continue;
+            Product p = dp.findProductById(it.productId);
+            if (p == null) {
+                d.missing = it.productId;
+                return d;
+            }
+            int k = 0;
+            while (k < d.count && d.products[k] != p) k++;
+            if (k == d.count) {
+                d.products[d.count++] = p;
+            }
+            d.qty[k] += it.quantity;
+        }
+        d.stripes = new int[d.count];
+        for (int i = 0; i < d.count; i++) d.stripes[i] = stripeOf(d.products[i]);
+        Arrays.sort(d.stripes);
+        int n = 0;
+        for (int i = 0; i < d.stripes.length; i++) {
+            if (n == 0 || d.stripes[n - 1] != d.stripes[i]) d.stripes[n++] = d.stripes[i];
+        }
+        d.stripeCount = n;
+        return d;
+    }
+
+    private void lockAll(Demand d) {
+        for (int i = 0; i < d.stripeCount; i++) locks[d.stripes[i]].lock();
+    }
+
+    private void unlockAll(Demand d) {
+        for (int i = d.stripeCount - 1; i >= 0; i--) locks[d.stripes[i]].unlock();
+    }
+
+    private static int stripeOf(Product p) {
+        return (p.productId.hashCode() & 0x7fffffff) % STRIPES;
+    }
+}
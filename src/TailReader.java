@@ -0,0 +1,143 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** TailReader.java – Reads the end of append-only text files (logs.txt, login_audit.txt, invoices.txt)
+ *
+ *  lastLines() seeks backward from the end in CHUNK-sized reads, so it touches only about the bytes of the
+ *  lines it returns. A TailReader instance follows a file: poll() returns the complete lines appended since
+ *  the previous call and starts over if the file was truncated or rolled over.
+ */
+public class TailReader {
+    private static final int CHUNK = 8192;
+
+    private final String path;
+    private long position;                 // bytes of the file already returned
+    private byte[] partial = new byte[0];  // trailing bytes of a line not finished yet
+    private Object fileKey;                // identity of the followed file (changes when it is renamed away)
+
+    /** Follow a file from its current end (only lines written after this call are returned) */
+    public TailReader(String path) {
+        this.path = path;
+        this.position = new File(path).length();
+        this.fileKey = fileKeyOf(path);
+    }
+
+    /** The last n non-blank lines of a file, oldest first (empty list if the file does not exist) */
+    public static List<String> lastLines(String path, int n) {
+        ArrayList<String> lines = new ArrayList<String>();
+        if (n <= 0) return lines;
+        File f = new File(path);
+        if (!f.exists()) return lines;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(f, "r");
+            try {
+                long end = raf.length();
+                byte[] chunk = new byte[CHUNK];
+                byte[] line = new byte[256];   // current line collected backwards
+                int len = 0;
+                long pos = end;
+                while (pos > 0 && lines.size() < n) {
+                    int size = (int) Math.min(CHUNK, pos);
+                    pos -= size;
+                    raf.seek(pos);
+                    raf.readFully(chunk, 0, size);
+                    for (int i = size - 1; i >= 0 && lines.size() < n; i--) {
+                        if (chunk[i] == '\n') {
+                            addReversed(lines, line, len);
+                            len = 0;
+                        } else {
+                            if (len == line.length) line = Arrays.copyOf(line, len * 2);
+                            line[len++] = chunk[i];
+                        }
+                    }
+                }
+                if (pos == 0 && lines.size() < n) addReversed(lines, line, len);   // first line of the file
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            return lines;
+        }
+        Collections.reverse(lines);
+        return lines;
+    }
+
+    /** The last non-blank line of a file ("" if there is none) */
+    public static String lastLine(String path) {
+        List<String> lines = lastLines(path, 1);
+        return lines.isEmpty() ? "" : lines.get(0);
+    }
+
+    /** Complete, non-blank lines appended since the last poll (follow mode) */
+    public List<String> poll() {
+        ArrayList<String> lines = new ArrayList<String>();
+        File f = new File(path);
+        long length = f.length();
+        Object key = fileKeyOf(path);
+        if (length < position || (key != null && !key.equals(fileKey))) {
+            // truncated (Clear Logs) or replaced by a new segment: read the new file from the start
+            position = 0;
+            partial = new byte[0];
+        }
+        fileKey = key;
+        if (length == position) return lines;
+        try {
+            RandomAccessFile raf = new RandomAccessFile(f, "r");
+            try {
+                raf.seek(position);
+                byte[] data = new byte[(int) Math.min(length - position, 1 << 20)];
+                raf.readFully(data);
+                position += data.length;
+
+                byte[] buf = partial;
+                int start = 0;
+                for (int i = 0; i < data.length; i++) {
+                    if (data[i] != '\n') continue;
+                    byte[] l = new byte[buf.length + (i - start)];
+                    System.arraycopy(buf, 0, l, 0, buf.length);
+                    System.arraycopy(data, start, l, buf.length, i - start);
+                    String s = new String(l, StandardCharsets.UTF_8).trim();
+                    if (s.length() > 0) lines.add(s);
+                    buf = new byte[0];
+                    start = i + 1;
+                }
+                byte[] rest = new byte[buf.length + (data.length - start)];
+                System.arraycopy(buf, 0, rest, 0, buf.length);
+                System.arraycopy(data, start, rest, buf.length, data.length - start);
+                partial = rest;
+            } finally {
+                raf.close();
+            }
+        } catch (IOException e) {
+            // file vanished between length() and open (e.g. while rolling); retry on the next poll
+        }
+        return lines;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    private static Object fileKeyOf(String path) {
+        try {
+            return Files.readAttributes(new File(path).toPath(), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void addReversed(ArrayList<String> lines, byte[] line, int len) {
+        byte[] b = new byte[len];
+        for (int i = 0; i < len; i++) b[i] = line[len - 1 - i];
+        String s = new String(b, StandardCharsets.UTF_8).trim();
+        if (s.length() > 0) lines.add(s);
+    }
+}
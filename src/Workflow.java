@@ -3,7 +3,9 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
+import java.util.List;
 
 
 
@@ -24,16 +26,33 @@ public class Workflow {
     public static final String SOFTGRAY  = "\u001B[38;5;250m"; // normal text
     // Background (optional)
     public static final String BG_WHITE  = "\u001B[48;5;231m";
+    // Status colours per view, indexed by OrderStatus.ordinal()
+    // (PENDING, PACKED, SHIPPED, OUT_FOR_DELIVERY, DELIVERED, CANCELLED)
+    private static final String[] SEARCH_STATUS_COLORS  = { MINT, MINT, MINT, MINT, LAVENDER, ROSE };
+    private static final String[] UPDATE_STATUS_COLORS  = { ANSI_MUTED_PEACH, SOFTGRAY, SOFTGRAY, ANSI_SOFT_CORAL, MINT, ROSE };
+    private static final String[] PREVIEW_STATUS_COLORS = { MINT, MINT, MINT, ANSI_SOFT_CORAL, MINT, ROSE };
 
 
     private DataPersistence dp;
     private Log log;
     private PaymentService paymentService;
+    private OrderProcessor orderProcessor;
 
     public Workflow(DataPersistence dp, Log log) {
         this.dp = dp;
         this.log = log;
         this.paymentService = new PaymentService(log);
+        this.orderProcessor = new OrderProcessor(dp, log);
+    }
+
+    /** Number of order slots to scan when history must be included: on-disk history (tiered mode),
+     *  then resident orders. Use with orderAt(i); slots may be null. */
+    private int allOrderSlots() {
+        return dp.orderSlotCount();
+    }
+
+    private Order orderAt(int i) {
+        return dp.orderInSlot(i);   // history pages in from orders.txt on demand
     }
 
     /** Wrapper for Admin authentication */
@@ -88,40 +107,16 @@ private String centerText(String text, int width) {
 }
 private void printRoleSummary(Admin admin) {
     printTitle("Quick Summary");
-   int pending = 0;
-int packed = 0;
-int shipped = 0;
-int outForDelivery = 0;
-int delivered = 0;
-int cancelled = 0;
-
-for (int i = 0; i < dp.orderCount; i++) {
-    Order o = dp.orders[i];
-    if (o == null || o.status == null) continue;
-
-    switch (o.status) {
-        case "PENDING":
-            pending++;
-            break;
-        case "PACKED":
-            packed++;
-            break;
-        case "SHIPPED":
-            shipped++;
-            break;
-        case "OUT_FOR_DELIVERY":
-            outForDelivery++;
-            break;
-        case "DELIVERED":
-            delivered++;
-            break;
-        case "CANCELLED":
-            cancelled++;
-            break;
-    }
-}
+    // one bitset per status; on-disk history (tiered mode) is classified from its index, not read
+    BitSet[] bits = dp.statusBitsets();
+    int pending = bits[OrderStatus.PENDING.ordinal()].cardinality();
+    int packed = bits[OrderStatus.PACKED.ordinal()].cardinality();
+    int shipped = bits[OrderStatus.SHIPPED.ordinal()].cardinality();
+    int outForDelivery = bits[OrderStatus.OUT_FOR_DELIVERY.ordinal()].cardinality();
+    int delivered = bits[OrderStatus.DELIVERED.ordinal()].cardinality();
+    int cancelled = bits[OrderStatus.CANCELLED.ordinal()].cardinality();
     int activeOrders = packed + shipped + outForDelivery;
-       System.out.println(SOFTGRAY + "Total Orders: " + RESET + MINT + dp.orderCount + RESET);
+       System.out.println(SOFTGRAY + "Total Orders: " + RESET + MINT + (dp.orderCount + dp.historyCount()) + RESET);
        System.out.println(SOFTGRAY + "Active Orders: " + RESET + MINT + activeOrders + RESET);
        System.out.println(SOFTGRAY + "Pending: " + RESET + MINT+ pending + RESET);
        System.out.println(SOFTGRAY + "Packed: " + RESET + MINT + packed + RESET);
@@ -223,6 +218,25 @@ private int countLowStock(int threshold) {
 
 
         }
+
+        // ===== EVENTS & LEDGERS =====
+        System.out.print("\n" + PINK + BOLD + "EVENTS & LEDGERS" + RESET + "\n");
+        System.out.print(LAVENDER + "27." + RESET + " " + MINT + "Query Event Log" + RESET + "\n");
+        System.out.print(LAVENDER + "28." + RESET + " " + MINT + "Recent Activity (live, in memory)" + RESET + "\n");
+        System.out.print(LAVENDER + "29." + RESET + " " + MINT + "Bulk Status Update" + RESET + "\n");
+        System.out.print(LAVENDER + "30." + RESET + " " + MINT + "Invoice Ledger" + RESET + "\n");
+
+        // ===== MONITORING & BATCH (ADMIN ONLY) =====
+        System.out.print("\n" + PINK + BOLD + "MONITORING & BATCH (ADMIN ONLY)" + RESET + "\n");
+        if (currentAdmin.role == Role.ADMIN) {
+            System.out.print(LAVENDER + "31." + RESET + " " + MINT + "Live Log Monitor" + RESET + "\n");
+            System.out.print(LAVENDER + "32." + RESET + " " + MINT + "Login Audit Summary" + RESET + "\n");
+            System.out.print(LAVENDER + "33." + RESET + " " + MINT + "Process All Pending Orders (batch)" + RESET + "\n");
+        } else {
+            System.out.print(LAVENDER + "31." + RESET + " " + ROSE + "Live Log Monitor (Admin only)" + RESET + "\n");
+            System.out.print(LAVENDER + "32." + RESET + " " + ROSE + "Login Audit Summary (Admin only)" + RESET + "\n");
+            System.out.print(LAVENDER + "33." + RESET + " " + ROSE + "Process All Pending Orders (Admin only)" + RESET + "\n");
+        }
        
         // ===== EXIT =====
         System.out.print("\n" + LAVENDER + " 0." + RESET + " " + ROSE + "Exit" + RESET + "\n");
@@ -244,7 +258,13 @@ private int countLowStock(int threshold) {
             case "3":
                 System.out.println(PINK + BOLD + "==== Available Orders (Sorted by Date) ====" + RESET);
                 printLine();
-                Order[] sortedOrders = Arrays.copyOf(dp.orders, dp.orderCount);
+                Order[] sortedOrders = new Order[allOrderSlots()];
+                int sortedCount = 0;
+                for (int i = 0; i < sortedOrders.length; i++) {
+                    Order o = orderAt(i);
+                    if (o != null) sortedOrders[sortedCount++] = o;
+                }
+                sortedOrders = Arrays.copyOf(sortedOrders, sortedCount);
                 Arrays.sort(sortedOrders, Comparator.comparing(o -> o.date));
 
                 for (Order order : sortedOrders) {
@@ -308,6 +328,7 @@ private int countLowStock(int threshold) {
                     dp.loadTestDataFromFile(file);
                     dp.saveAll();
                     System.out.print(MINT + "Loaded test data successfully\n" + RESET);
+                    System.out.print(SOFTGRAY + "-> " + dp.lastFlushCount + " records saved.\n" + RESET);
                     System.out.print(SOFTGRAY + "-> " + dp.productCount + " products loaded.\n" + RESET);
                     System.out.print(SOFTGRAY + "-> " + dp.orderCount + " orders loaded.\n" + RESET);
                     System.out.print(SOFTGRAY + "-> " + dp.adminCount + " admins loaded.\n" + RESET);
@@ -385,6 +406,34 @@ private int countLowStock(int threshold) {
                 }
                 break;    
 
+            case "27": queryEventLog(console); break;
+            case "28": showRecentActivity(console); break;
+            case "29": bulkStatusUpdate(console); break;
+            case "30": showInvoiceLedger(console); break;
+
+            case "31":
+                if (currentAdmin.role == Role.ADMIN) {
+                    liveLogMonitor(console);
+                } else {
+                    System.out.println(ROSE + "Restricted: Admin only." + RESET);
+                }
+                break;
+
+            case "32":
+                if (currentAdmin.role == Role.ADMIN) {
+                    showLoginAuditSummary();
+                } else {
+                    System.out.println(ROSE + "Restricted: Admin only." + RESET);
+                }
+                break;
+
+            case "33":
+                if (currentAdmin.role == Role.ADMIN) {
+                    processAllPendingOrders(console);
+                } else {
+                    System.out.println(ROSE + "Restricted: Admin only." + RESET);
+                }
+                break;
   
             case "0":
                 System.out.print(LAVENDER + "Exiting Admin Dashboard..." + RESET + "\n");
@@ -461,20 +510,23 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         if (dateFilter == null) dateFilter = "";
         dateFilter = dateFilter.trim();
 
-        String statusFilterUC = statusFilter.toUpperCase();
         String paymentFilterUC = paymentFilter.toUpperCase();
+        OrderStatus wanted = OrderStatus.parse(statusFilter);
+        if (!statusFilter.equals("") && wanted == null) {
+            System.out.print(ROSE + "Unknown status \"" + statusFilter + "\"." + RESET + "\n");
+            return;
+        }
+        // only slots with the wanted status are visited (history pages of other statuses are never read)
+        BitSet slots = dp.slotsWithStatus(wanted == null ? OrderStatus.ALL : wanted.bit());
 
-        Order[] results = new Order[dp.orderCount];
+        Order[] results = new Order[slots.cardinality()];
         int count = 0;
         printLine();
 
-        for (int i = 0; i < dp.orderCount; i++) {
-            Order o = dp.orders[i];
+        for (int i = slots.nextSetBit(0); i >= 0; i = slots.nextSetBit(i + 1)) {
+            Order o = orderAt(i);
             if (o == null) continue;
 
-            if (!statusFilterUC.equals("") && (o.status == null || !o.status.toUpperCase().equals(statusFilterUC))) {
-                continue;
-            }
             if (!paymentFilterUC.equals("") && (o.paymentMode == null || !o.paymentMode.toUpperCase().equals(paymentFilterUC))) {
                 continue;
             }
@@ -499,14 +551,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
             for (int i = 0; i < count; i++) {
                 Order o = results[i];
 
-                // ✅ Status color (added PACKED + OUT_FOR_DELIVERY)
-                String statusStr = o.status;
-                if ("DELIVERED".equals(statusStr)) statusStr = LAVENDER + statusStr + RESET;
-                else if ("CANCELLED".equals(statusStr)) statusStr = ROSE + statusStr + RESET;
-                else if ("PENDING".equals(statusStr)) statusStr = MINT + statusStr + RESET;
-                else if ("SHIPPED".equals(statusStr)) statusStr = MINT + statusStr + RESET;
-                else if ("PACKED".equals(statusStr)) statusStr = MINT + statusStr + RESET;
-                else if ("OUT_FOR_DELIVERY".equals(statusStr)) statusStr = MINT+ statusStr + RESET;
+                String statusStr = SEARCH_STATUS_COLORS[o.status.ordinal()] + o.status + RESET;
 
                 int total = safeOrderTotal(o); // ✅ FIX total 0 issue
 
@@ -515,7 +560,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
                         + " | Status: " + statusStr
                         + " | Total: BDT " + total);
 
-                if ("CANCELLED".equals(o.status) && o.cancelReason != null && !o.cancelReason.equals("")) {
+                if (o.status == OrderStatus.CANCELLED && o.cancelReason != null && !o.cancelReason.equals("")) {
                     System.out.print(ROSE + " | CancelReason: " + o.cancelReason + RESET);
                 }
                 System.out.print("\n");
@@ -527,16 +572,9 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
             if (selId == null) selId = "";
             selId = selId.trim();
 
-            // ✅ STRICT: must type exact ID like 01001 (no normalizeOrderId)
+            // Index lookup: any spelling of the ID ("1001", "O1001", "01001") finds the order
             if (!selId.equals("")) {
-                Order target = null;
-                for (int i = 0; i < dp.orderCount; i++) {
-                    Order o = dp.orders[i];
-                    if (o != null && o.orderId.equalsIgnoreCase(selId)) {
-                        target = o;
-                        break;
-                    }
-                }
+                Order target = dp.findOrderById(selId);
                 if (target != null) viewOrderDetails(target);
                 else System.out.print(ROSE + "Order " + selId + " not found in results.\n" + RESET);
             }
@@ -551,38 +589,23 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
     String q = query.trim();
     String idTry=normalizeOrderId(q);
 
-    // ✅ STRICT ID RULE:
-    // Remove this old behavior:
-    // if (!q.startsWith("O") && isNumeric(q)) q = "O" + q;
-    // Now user must type EXACT orderId (01001), not 1001.
-
-    // Try exact Order ID match
-    Order found = null;
-    for (int i = 0; i < dp.orderCount; i++) {
-        Order o = dp.orders[i];
-        if (o != null && o.orderId != null && o.orderId.equalsIgnoreCase(idTry)) {
-            found = o;
-            break;
-        }
-    }
+    // Order ID match (index lookup; "1001", "O1001" and "01001" all find the same order)
+    Order found = dp.findOrderById(idTry);
 
     if (found != null) {
         viewOrderDetails(found);
         return;
     }
 
-    // Otherwise treat input as status query
-    String statusQuery = q;
-    Order[] results = new Order[dp.orderCount];
+    // Otherwise treat input as status query: every status whose name contains it
+    int statusMask = OrderStatus.matching(q);
+    BitSet slots = dp.slotsWithStatus(statusMask);
+    Order[] results = new Order[slots.cardinality()];
     int count = 0;
 
-    for (int i = 0; i < dp.orderCount; i++) {
-        Order o = dp.orders[i];
-        if (o == null || o.status == null) continue;
-
-        if (o.status.toUpperCase().contains(statusQuery)) {
-            results[count++] = o;
-        }
+    for (int i = slots.nextSetBit(0); i >= 0; i = slots.nextSetBit(i + 1)) {
+        Order o = orderAt(i);
+        if (o != null) results[count++] = o;
     }
 
     if (count == 0) {
@@ -593,13 +616,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         for (int i = 0; i < count; i++) {
             Order o = results[i];
 
-            String statusStr = o.status;
-            if ("DELIVERED".equals(statusStr)) statusStr = LAVENDER + statusStr + RESET;
-            else if ("CANCELLED".equals(statusStr)) statusStr = ROSE + statusStr + RESET;
-            else if ("PENDING".equals(statusStr)) statusStr = MINT + statusStr + RESET;
-            else if ("SHIPPED".equals(statusStr)) statusStr = MINT + statusStr + RESET;
-            else if ("PACKED".equals(statusStr)) statusStr = MINT + statusStr + RESET;
-            else if ("OUT_FOR_DELIVERY".equals(statusStr)) statusStr = MINT + statusStr + RESET;
+            String statusStr = SEARCH_STATUS_COLORS[o.status.ordinal()] + o.status + RESET;
 
             int total = safeOrderTotal(o); // ✅ FIX total 0 issue
 
@@ -616,16 +633,9 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         if (selId == null) selId = "";
         selId = selId.trim();
 
-        // ✅ STRICT ID (no normalizeOrderId)
+        // Index lookup: any spelling of the ID finds the order
         if (!selId.equals("")) {
-            Order target = null;
-            for (int i = 0; i < dp.orderCount; i++) {
-                Order o = dp.orders[i];
-                if (o != null && o.orderId.equalsIgnoreCase(selId)) {
-                    target = o;
-                    break;
-                }
-            }
+            Order target = dp.findOrderById(selId);
             if (target != null) viewOrderDetails(target);
             else System.out.print(ROSE + "Order " + selId + " not found in results.\n" + RESET);
         }
@@ -647,57 +657,43 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
     }
     id = normalizeOrderId(id);
     // Find the order by ID
-    Order order = null;
-    for (int i = 0; i < dp.orderCount; i++) {
-        Order o = dp.orders[i];
-        if (o != null && o.orderId.equalsIgnoreCase(id)) {
-            order = o;
-            break;
-        }
-    }
+    Order order = dp.findOrderById(id);
     if (order == null) {
         System.out.print(ROSE+"Order " + id + " not found.\n"+RESET);
         return;
     }
-    String currentStatus = order.status;
+    OrderStatus currentStatus = order.status;
     // If order already delivered or cancelled, no further updates allowed
-    if (currentStatus.equals("DELIVERED") || currentStatus.equals("CANCELLED")) {
+    if (currentStatus.isFinal()) {
         System.out.print(ROSE+"Order " + id + " is " + currentStatus + "; status cannot be changed.\n"+RESET);
         return;
     }
     // If order is PENDING, attempt to process it (inventory check & payment)
-    if (currentStatus.equals("PENDING")) {
+    if (currentStatus == OrderStatus.PENDING) {
         boolean processed = processPendingOrder(order, console);
         if (!processed) {
             // If processing failed, order status is now CANCELLED (reason set in processPendingOrder)
             System.out.print(ROSE+"Order processing failed. Status updated to CANCELLED ("+ order.cancelReason + ").\n"+RESET);
-            dp.saveOrders();
+            dp.persistOrder(order);
             return;
         }
         // If processing succeeded, the order status is now PACKED
         currentStatus = order.status;
     }
-    // Determine the next status in the workflow sequence
-    String nextStatus = null;
-    if (currentStatus.equals("PACKED")) {
-        nextStatus = "SHIPPED";
-    } else if (currentStatus.equals("SHIPPED")) {
-        nextStatus = "OUT_FOR_DELIVERY";
-    } else if (currentStatus.equals("OUT_FOR_DELIVERY")) {
-        nextStatus = "DELIVERED";
-    }
+    // Determine the next status from the transition table
+    OrderStatus nextStatus = currentStatus.next();
     if (nextStatus == null) {
         System.out.print("No further status transition available for " + currentStatus + ".\n");
         return;
     }
     // Update order status to the next stage
-    order.status = nextStatus;
-    if (nextStatus.equals("SHIPPED")) {
+    dp.setStatus(order, nextStatus);
+    if (nextStatus == OrderStatus.SHIPPED) {
         // Assign a tracking ID once the order is shipped
-        order.trackingId = "TRK" + order.orderId.substring(1);  // e.g., O1005 -> TRK1005
+        order.trackingId = OrderProcessor.trackingId(order);  // e.g., O1005 -> TRK1005
     }
-    // Persist the updated orders list to file
-    dp.saveOrders();
+    // Persist the change (one journal record, not a full rewrite of orders.txt)
+    dp.persistOrder(order);
     log.write(order.orderId, "Status changed to " + nextStatus);
     System.out.print(MINT+"Order " + order.orderId + " status updated to " + nextStatus + ".\n"+RESET);
 }
@@ -716,13 +712,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         }
         oldId = normalizeOrderId(oldId);
         // Find the original order
-        Order original = null;
-        for (int i = 0; i < dp.orderCount; i++) {
-            if (dp.orders[i] != null && dp.orders[i].orderId.equalsIgnoreCase(oldId)) {
-                original = dp.orders[i];
-                break;
-            }
-        }
+        Order original = dp.findOrderById(oldId);
         if (original == null) {
             System.out.print(ROSE+"Order " + oldId + " not found.\n"+RESET);
             return;
@@ -742,7 +732,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         // Process the new order through inventory & payment
         boolean success = processPendingOrder(newOrder, console);
         // Add the new order to system records
-        dp.orders[dp.orderCount++] = newOrder;
+        dp.addOrder(newOrder);
         if (!success) {
             System.out.print(ROSE+"Reorder created as " + newOrder.orderId + " but failed (" + newOrder.cancelReason + ").\n"+RESET);
         } else {
@@ -849,7 +839,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
             o.date = date;
             o.address = address;
             o.paymentMode = paymentMode;
-            o.status = "PENDING";
+            o.status = OrderStatus.PENDING;
             dp.parseItemsIntoOrder(o, itemList);
 
             // Calculate total
@@ -862,7 +852,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
             }
             o.totalAmount = total;
 
-            dp.orders[dp.orderCount++] = o;
+            dp.addOrder(o);
             System.out.print(MINT+"Imported: " + o.orderId + "\n"+RESET);
             }
         } catch (Exception e) {
@@ -900,7 +890,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
     Order simOrder = new Order();
     simOrder.orderId = dp.generateOrderId();
     simOrder.date = currentDateString();
-    simOrder.status = "PENDING";  // Default status
+    simOrder.status = OrderStatus.PENDING;  // Default status
 
     // Build order based on scenario choice
     if (opt.equals("2")) {
@@ -912,7 +902,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         }
         simOrder.addItem(new Item(p.productId, 1));
         simOrder.paymentMode = "MockCard";
-        simOrder.status = "CANCELLED"; // Simulate failure
+        dp.setStatus(simOrder, OrderStatus.CANCELLED); // Simulate failure
         simOrder.cancelReason = "Payment Failure (MockCard)";
     } else if (opt.equals("3")) {
         // Scenario 3: Inventory shortage – order more than available stock of a product
@@ -930,7 +920,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         simOrder.addItem(new Item(p.productId, largeQty));
         simOrder.paymentMode = "COD";
         // Mark the order as cancelled due to inventory shortage
-        simOrder.status = "CANCELLED"; // Simulate cancellation
+        dp.setStatus(simOrder, OrderStatus.CANCELLED); // Simulate cancellation
         simOrder.cancelReason = "Inventory Shortage";
     } else {
         // Scenario 1 or 4: Successful or Random order – pick 1-2 random items within stock
@@ -945,8 +935,11 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
             simOrder.addItem(new Item(p2.productId, 1));
         }
         simOrder.paymentMode = "COD";
-        // Successful order – set the status as "DELIVERED"
-        simOrder.status = "DELIVERED"; // Mark as delivered for successful order
+        // Successful order – walk it through every step up to "DELIVERED"
+        dp.setStatus(simOrder, OrderStatus.PACKED);
+        while (simOrder.status.next() != null) {
+            dp.setStatus(simOrder, simOrder.status.next());
+        }
     }
     simOrder.address = "SimulatedAddress";
 
@@ -955,9 +948,9 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
 
 
     // Add to system records (orders.txt)
-    dp.orders[dp.orderCount++] = simOrder;
-    // Log to orders.txt
-    dp.saveOrders();
+    dp.addOrder(simOrder);
+    // Log to orders.txt (via the order journal)
+    dp.persistOrder(simOrder);
     System.out.print(MINT+"Simulation Order " + simOrder.orderId + " created (Status: " + simOrder.status + ").\n"+RESET);
     // Log to log.txt
     log.write(simOrder.orderId, "Simulation order with status: " + simOrder.status);
@@ -969,9 +962,9 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         printTitle("Cancelled Orders:");
          boolean found = false;
 
-        for (int i = 0; i < dp.orderCount; i++) {
-             Order o = dp.orders[i];
-        if (o != null && o.status.equals("CANCELLED")) {
+        for (int i = 0; i < allOrderSlots(); i++) {
+             Order o = orderAt(i);
+        if (o != null && o.status == OrderStatus.CANCELLED) {
             System.out.print("- " + o.orderId +
                              " | Reason: " + o.cancelReason + "\n");
             found = true;
@@ -992,18 +985,19 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         }
         cid = normalizeOrderId(cid);
         // Find the cancelled order
-        Order original = null;
-        for (int i = 0; i < dp.orderCount; i++) {
-            Order o = dp.orders[i];
-            if (o != null && o.orderId.equalsIgnoreCase(cid) && o.status.equals("CANCELLED")) {
-                original = o;
-                break;
-            }
-        }
+        Order original = dp.findOrderById(cid);
+        if (original != null && original.status != OrderStatus.CANCELLED) original = null;
         if (original == null) {
             System.out.print(ROSE+"Order " + cid + " not found in cancelled list.\n"+RESET);
             return;
         }
+        // A cancelled order is placed again at most once (unless that retry was cancelled too)
+        String earlier = dp.orderSteps().retriedAs(original);
+        Order previous = (earlier == null ? null : dp.findOrderById(earlier));
+        if (previous != null && previous.status != OrderStatus.CANCELLED) {
+            System.out.print(ROSE+"Order " + cid + " was already retried as " + previous.orderId + " (" + previous.status + ").\n"+RESET);
+            return;
+        }
         // Use handleReorder logic to attempt the order again (with same items)
         Order retryOrder = new Order();
         retryOrder.orderId = dp.generateOrderId();
@@ -1016,10 +1010,11 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
             retryOrder.addItem(new Item(it.productId, it.quantity));
         }
         boolean success = processPendingOrder(retryOrder, console);
-        dp.orders[dp.orderCount++] = retryOrder;
+        dp.addOrder(retryOrder);
         if (success) {
             System.out.print(MINT+"Order " + retryOrder.orderId + " reprocessed successfully (Status: " + retryOrder.status + ").\n"+RESET);
             log.write(retryOrder.orderId, "Retry successful for " + cid);
+            dp.orderSteps().record(original, StepLedger.RETRY, retryOrder.orderId);
         } else {
             System.out.print(ROSE+"Retry order failed (" + retryOrder.cancelReason + "). New Order ID: " + retryOrder.orderId + "\n"+RESET);
         }
@@ -1036,6 +1031,8 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
             System.out.print(ROSE+"Invalid number of days.\n"+RESET);
             return;
         }
+        // Delivered orders may be on disk only (tiered mode); the list is rebuilt below
+        dp.materializeHistory();
         String todayStr = currentDateString();
         // Convert date to a simple numeric day count (approximate)
         int todayCount = dateToDayCount(todayStr);
@@ -1047,7 +1044,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         for (int i = 0; i < dp.orderCount; i++) {
             Order o = dp.orders[i];
             if (o == null) continue;
-            if (o.status.equals("DELIVERED")) {
+            if (o.status == OrderStatus.DELIVERED) {
                 // Calculate age in days
                 int orderDayCount = dateToDayCount(o.date);
                 int age = todayCount - orderDayCount;
@@ -1057,6 +1054,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
                     archivedCount++;
                     // Skip adding it to remaining active orders (effectively removing it)
                     log.write(o.orderId, "Archived after delivery (age " + age + " days)");
+                    dp.orderSteps().forget(o);   // its ID may be handed out again
                     continue;
                 }
             }
@@ -1064,9 +1062,8 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
             remaining[remCount++] = o;
         }
         fw.close();
-        // Replace the active orders list with the remaining orders
-        dp.orders = remaining;
-        dp.orderCount = remCount;
+        // Replace the active orders list with the remaining orders (rebuilds the ID index)
+        dp.replaceOrders(remaining, remCount);
         System.out.print(MINT+"Archived " + archivedCount + " delivered orders (older than " + N + " days).\n"+RESET);
     }
 
@@ -1095,6 +1092,7 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
         }
         // Update password hash and save to file immediately
         admin.passHash = Admin.hashPassword(newPass1);
+        dp.markAdminsDirty();
         dp.saveAll();
         log.write("ADMIN", "Password changed");
         System.out.print(MINT+"Admin password changed successfully.\n"+RESET);
@@ -1110,10 +1108,8 @@ private void handleOrderSearch(BufferedReader console) throws Exception {
             System.out.print(ROSE+"Log clearance cancelled.\n"+RESET);
             return;
         }
-        // Overwrite logs.txt with nothing
-        FileWriter fw = new FileWriter(dp.path("logs.txt"), false);
-        fw.write("");
-        fw.close();
+        // Overwrite logs.txt with nothing (queued entries are written first)
+        log.clear();
         System.out.print(MINT+"All logs cleared.\n"+RESET);
     }
 
@@ -1133,13 +1129,7 @@ private void generateReceipt(BufferedReader console) throws Exception {
 
     rid = normalizeOrderId(rid);
 
-    Order order = null;
-    for (int i = 0; i < dp.orderCount; i++) {
-        if (dp.orders[i] != null && dp.orders[i].orderId.equalsIgnoreCase(rid)) {
-            order = dp.orders[i];
-            break;
-        }
-    }
+    Order order = dp.findOrderById(rid);
 
     if (order == null) {
         System.out.print(ROSE + "Order " + rid + " not found.\n" + RESET);
@@ -1147,7 +1137,7 @@ private void generateReceipt(BufferedReader console) throws Exception {
     }
 
     // ✅ safer status check
-    if (!"DELIVERED".equalsIgnoreCase(order.status)) {
+    if (order.status != OrderStatus.DELIVERED) {
         System.out.print(ROSE + "Receipt can only be generated for delivered orders.\n" + RESET);
         return;
     }
@@ -1288,11 +1278,7 @@ private void handleProductManagement(BufferedReader console) throws Exception {
     action = action.trim().toUpperCase();
 
     if (action.equals("A")) {
-        // Add new product
-        if (dp.productCount >= dp.products.length) {
-            System.out.print(ROSE+"Product list is full, cannot add more products.\n"+RESET);
-            return;
-        }
+        // Add new product (catalog grows as needed, no fixed cap)
 
         // ✅ Ask category FIRST (needed to generate ID)
         System.out.print(SOFTGRAY+"Enter Category (Smartphone/Laptop/Home Appliance/Accessories/Power Bank): "+RESET);
@@ -1342,7 +1328,7 @@ private void handleProductManagement(BufferedReader console) throws Exception {
         int price = DataPersistence.toInt(priceStr);
         int stock = DataPersistence.toInt(stockStr);
 
-        dp.products[dp.productCount++] = new Product(newId, category, brand, name, price, stock);
+        dp.addProduct(new Product(newId, category, brand, name, price, stock));
         dp.saveProducts(); // ✅ save immediately
         System.out.print(MINT+"Product " + newId + " added successfully.\n"+RESET);
         log.write("ADMIN", "Added product " + newId);
@@ -1420,14 +1406,7 @@ private void handleProductManagement(BufferedReader console) throws Exception {
             return;
         }
 
-        int idx = -1;
-        for (int i = 0; i < dp.productCount; i++) {
-            if (dp.products[i] != null && dp.products[i].productId.equals(delId)) {
-                idx = i;
-                break;
-            }
-        }
-        if (idx == -1) {
+        if (dp.findProductById(delId) == null) {
             System.out.print(ROSE+"Product " + delId + " not found.\n"+RESET);
             return;
         }
@@ -1441,11 +1420,7 @@ private void handleProductManagement(BufferedReader console) throws Exception {
             return;
         }
 
-        for (int j = idx; j < dp.productCount - 1; j++) {
-            dp.products[j] = dp.products[j+1];
-        }
-        dp.products[dp.productCount - 1] = null;
-        dp.productCount--;
+        dp.removeProduct(delId);  // keeps the ID index in sync
 
         dp.saveProducts();
         System.out.print(MINT+"Product " + delId + " deleted.\n"+RESET);
@@ -1459,104 +1434,9 @@ private void handleProductManagement(BufferedReader console) throws Exception {
 
  /** Process a PENDING order through inventory check, reservation, invoice generation, and payment simulation */
 private boolean processPendingOrder(Order order, BufferedReader console) throws Exception {
-    if (order == null || !order.status.equals("PENDING")) return false;
-
-    boolean inventoryOK = true;
-
-    // Step 1: Pre-check all items without modifying stock
-    for (int i = 0; i < order.itemCount; i++) {
-        Item it = order.items[i];
-        if (it == null) continue;
-        Product prod = dp.findProductById(it.productId);
-        if (prod == null) {
-            order.status = "CANCELLED";
-            order.cancelReason = "Invalid product " + it.productId;
-            log.write(order.orderId, "Order cancelled - " + order.cancelReason);
-            return false;
-        }
-        if (prod.stock < it.quantity) {
-            inventoryOK = false;
-            order.cancelReason = "Inventory Shortage: " + it.productId;
-            break;
-        }
-    }
-
-    if (!inventoryOK) {
-        order.status = "CANCELLED";
-        log.write(order.orderId, "Order cancelled -" + order.cancelReason);
-        return false;
-    }
-
-    // Step 2: Reserve stock
-    for (int i = 0; i < order.itemCount; i++) {
-        Item it = order.items[i];
-        Product prod = dp.findProductById(it.productId);
-        if (prod != null) {
-            prod.stock -= it.quantity;
-        }
-    }
-    log.write(order.orderId, "Inventory OK – stock reserved");
-
-    // Step 3: Calculate total price
-    int total = 0;
-    for (int i = 0; i < order.itemCount; i++) {
-        Item it = order.items[i];
-        Product prod = dp.findProductById(it.productId);
-        int price = (prod != null ? prod.price : 0);
-        total += price * it.quantity;
-    }
-    order.totalAmount = total;
-
-    // Step 4: Simulate payment
-    boolean paymentSuccess;
-    if (console == null) {
-        paymentSuccess = order.paymentMode.equalsIgnoreCase("COD");
-        if (order.paymentMode.equalsIgnoreCase("COD")) {
-        log.write(order.orderId, "PAYMENT OK (COD)");
-       } else {
-        log.write(order.orderId, "PAYMENT FAIL (Auto decline for simulation)");
-        paymentSuccess = false;
-    }
-    } else {
-        paymentSuccess = paymentService.processPayment(order, console);
-    }
-
-    // Step 5: Rollback stock if payment fails
-    if (!paymentSuccess) {
-        for (int i = 0; i < order.itemCount; i++) {
-            Item it = order.items[i];
-            Product prod = dp.findProductById(it.productId);
-            if (prod != null) {
-                prod.stock += it.quantity;
-            }
-        }
-        order.status = "CANCELLED";
-        order.cancelReason = "Payment Declined";
-        log.write(order.orderId, "Order cancelled - " + order.cancelReason);
-        return false;
-    }
-
-    // Step 6: Mark as PACKED and generate properly formatted invoice
-    order.status = "PACKED";
-    log.write(order.orderId, "Status changed to PACKED");
-
-    try {
-        // ✅ Format: INV-YYYYMM-####
-        String ym = order.date.substring(0, 7).replace("-", ""); // "202602"
-        String orderNum = order.orderId.substring(1); // drop 'O' → "1005"
-        String invoiceId = "INV-" + ym + "-" + orderNum;
-
-        FileWriter fw = new FileWriter(dp.path("invoices.txt"), true);
-        fw.write(invoiceId + "|BDT " + order.totalAmount + "\n");
-        fw.close();
-
-        // (Optional) Show invoice ID to admin
-        System.out.print("Invoice generated: " + invoiceId + "\n");
-    } catch (Exception e) {
-        // Ignore invoice errors silently
-    }
-
-    return true;
+    // without a console (simulation) card payments are declined instead of prompting
+    PaymentPolicy payment = (console == null ? paymentService.autoDecline() : paymentService.interactive(console));
+    return orderProcessor.process(order, payment);
 }
 
     /** View detailed information of an order (internal helper) */
@@ -1564,7 +1444,7 @@ private boolean processPendingOrder(Order order, BufferedReader console) throws
         System.out.print(LAVENDER+"Order ID: " + order.orderId + "\n"+RESET);
         System.out.print(LAVENDER+"Date: " + order.date + "\n"+RESET);
         System.out.print(LAVENDER+"Status: " + order.status + "\n"+RESET);
-        if (order.status.equalsIgnoreCase("CANCELLED")) {
+        if (order.status == OrderStatus.CANCELLED) {
             System.out.print(ROSE+"Cancel Reason: " + (order.cancelReason.equals("") ? "(None)" : order.cancelReason) + "\n"+RESET);
         }
         if (order.trackingId != null && !order.trackingId.equals("")) {
@@ -1585,7 +1465,7 @@ private boolean processPendingOrder(Order order, BufferedReader console) throws
 
     /** Feature 17: Generate a report of revenue and cancellations, write to report.txt */
     private void generateReport() throws Exception {
-        int totalOrders = dp.orderCount;
+        int totalOrders = dp.orderCount + dp.historyCount();
         int completedCount = 0;
         int cancelledCount = 0;
         int revenueSum = 0;
@@ -1593,14 +1473,16 @@ private boolean processPendingOrder(Order order, BufferedReader console) throws
         String[] reasons = new String[totalOrders];
         int[] reasonCounts = new int[totalOrders];
         int reasonTypes = 0;
-        for (int i = 0; i < dp.orderCount; i++) {
-            Order o = dp.orders[i];
+        // only DELIVERED and CANCELLED orders count here; skip the rest without loading them
+        BitSet slots = dp.slotsWithStatus(OrderStatus.DELIVERED.bit() | OrderStatus.CANCELLED.bit());
+        for (int i = slots.nextSetBit(0); i >= 0; i = slots.nextSetBit(i + 1)) {
+            Order o = orderAt(i);
             if (o == null) continue;
-            if (o.status.equalsIgnoreCase("DELIVERED")) {
+            if (o.status == OrderStatus.DELIVERED) {
                 completedCount++;
                 revenueSum += o.totalAmount;
             }
-            if (o.status.equalsIgnoreCase("CANCELLED")) {
+            if (o.status == OrderStatus.CANCELLED) {
                 cancelledCount++;
                 String reason = (o.cancelReason == null || o.cancelReason.equals("") ? "Unknown" : o.cancelReason);
                 // Increment count for this reason
@@ -1790,7 +1672,7 @@ private void acceptNewOrder(BufferedReader console) throws Exception {
     // (processPendingOrder will handle inventory check, payment processing, and update order status)
 
     // 6. Add the new order to system records
-    dp.orders[dp.orderCount++] = newOrder;
+    dp.addOrder(newOrder);
 
     // 7. Output result and log outcome
     if (!processed) {
@@ -1808,8 +1690,18 @@ private void systemHealthCheck() {
     printLine();
 
     System.out.print(MINT + "Orders loaded: " + RESET + dp.orderCount + "\n");
+    if (dp.tieredHistory) {
+        System.out.print(MINT + "History orders on disk: " + RESET + dp.historyCount() + "\n");
+    }
     System.out.print(MINT + "Products loaded: " + RESET + dp.productCount + "\n");
     System.out.print(MINT + "Admins loaded: " + RESET + dp.adminCount + "\n");
+    System.out.print(MINT + "Unsaved changes: " + RESET + (dp.hasUnsavedChanges() ? "yes (" + dp.dirtyOrderCount() + " orders pending)" : "none") + "\n");
+    System.out.print(MINT + "Records flushed by last save: " + RESET + dp.lastFlushCount + "\n");
+    System.out.print(MINT + "Log storage: " + RESET + log.storageSummary() + "\n");
+
+    ReservationLedger holds = orderProcessor.reservations();
+    System.out.print(MINT + "Stock holds awaiting payment: " + RESET + holds.openHolds()
+            + " (" + holds.expiredCount() + " expired and released)\n");
 
     int low = countLowStock(5);
     if (low > 0) {
@@ -1834,21 +1726,16 @@ private void showOrderTimeline(BufferedReader console) throws Exception {
     System.out.print(PINK + BOLD + "Timeline for " + id + "\n" + RESET);
     printLine();
 
-    BufferedReader br = null;
     boolean found = false;
     try {
-        br = new BufferedReader(new FileReader(dp.path("logs.txt")));
-        String line;
-        while ((line = br.readLine()) != null) {
-            if (line.contains(id)) {
-                found = true;
-                System.out.print(SOFTGRAY + "- " + RESET + line + "\n");
-            }
+        // only this order's lines, located through the log index across all segments (no full scan)
+        List<String> lines = log.linesForOrder(id);
+        for (int i = 0; i < lines.size(); i++) {
+            found = true;
+            System.out.print(SOFTGRAY + "- " + RESET + lines.get(i) + "\n");
         }
     } catch (Exception e) {
         System.out.print(ROSE + "logs.txt not found.\n" + RESET);
-    } finally {
-        if (br != null) br.close();
     }
 
     if (!found) {
@@ -1857,6 +1744,280 @@ private void showOrderTimeline(BufferedReader console) throws Exception {
     printLine();
 }
 
+private void queryEventLog(BufferedReader console) throws Exception {
+    System.out.print(LAVENDER + "Order ID (Enter = any): " + RESET);
+    String id = console.readLine();
+    if (id == null) id = "";
+    id = id.trim();
+
+    System.out.print(LAVENDER + "Event type (STATUS, CREATED, INVENTORY, PAYMENT_OK, PAYMENT_FAIL, PAYMENT_VOID,\n"
+            + "            CANCELLED, REORDER, RETRY, SIMULATION, ARCHIVE, ADMIN, INFO; Enter = any): " + RESET);
+    String type = console.readLine();
+    if (type == null) type = "";
+    type = type.trim();
+
+    System.out.print(LAVENDER + "Last N minutes (Enter = all time): " + RESET);
+    String mins = console.readLine();
+    if (mins == null) mins = "";
+    mins = mins.trim();
+    long from = 0;
+    if (!mins.equals("")) {
+        try {
+            from = System.currentTimeMillis() - Long.parseLong(mins) * 60000L;
+        } catch (NumberFormatException e) {
+            System.out.print(ROSE + "Invalid number of minutes.\n" + RESET);
+            return;
+        }
+    }
+
+    long t0 = System.nanoTime();
+    List<LogEvent> events;
+    try {
+        events = log.queryEvents(id, type, from, Long.MAX_VALUE);
+    } catch (Exception e) {
+        System.out.print(ROSE + "events.txt could not be read.\n" + RESET);
+        return;
+    }
+    long ms = (System.nanoTime() - t0) / 1000000;
+
+    System.out.print(PINK + BOLD + "Event Log" + RESET + "\n");
+    printLine();
+    for (int i = 0; i < events.size(); i++) {
+        LogEvent e = events.get(i);
+        System.out.print(SOFTGRAY + e.timeText() + " | " + RESET + e.orderId + SOFTGRAY + " | " + RESET
+                + LAVENDER + e.type + RESET + SOFTGRAY + " | " + e.admin + " | " + RESET + e.detail + "\n");
+    }
+    if (events.isEmpty()) {
+        System.out.print(ROSE + "No matching events." + RESET + "\n");
+    }
+    printLine();
+    System.out.print(SOFTGRAY + events.size() + " event(s) in " + ms + " ms" + RESET + "\n");
+}
+
+/** Run every PENDING order through processing without prompts, save once, and print a summary */
+private void processAllPendingOrders(BufferedReader console) throws Exception {
+    System.out.print(LAVENDER + "Auto-approve MockCard payments up to BDT (Enter = no limit, 0 = decline all cards): " + RESET);
+    String limitText = console.readLine();
+    if (limitText == null) limitText = "";
+    limitText = limitText.trim();
+    int cardLimit = Integer.MAX_VALUE;
+    if (!limitText.equals("")) {
+        try {
+            cardLimit = Integer.parseInt(limitText);
+        } catch (NumberFormatException e) {
+            System.out.print(ROSE + "Invalid amount.\n" + RESET);
+            return;
+        }
+    }
+    int cores = Runtime.getRuntime().availableProcessors();
+    System.out.print(LAVENDER + "Worker threads (Enter = " + cores + ", 1 = sequential): " + RESET);
+    String threadText = console.readLine();
+    if (threadText == null) threadText = "";
+    threadText = threadText.trim();
+    int threads = cores;
+    if (!threadText.equals("")) {
+        try {
+            threads = Math.max(1, Integer.parseInt(threadText));
+        } catch (NumberFormatException e) {
+            System.out.print(ROSE + "Invalid number of threads.\n" + RESET);
+            return;
+        }
+    }
+    OrderProcessor.BatchResult r;
+    if (threads > 1) {
+        System.out.print(LAVENDER + "Lock-free stock counters for flash-sale items? (Y/N, Enter = N): " + RESET);
+        String lf = console.readLine();
+        boolean lockFree = (lf != null && lf.trim().toUpperCase().startsWith("Y"));
+        ConcurrentOrderEngine engine = new ConcurrentOrderEngine(dp, log, threads, lockFree);
+        r = engine.processAllPending(paymentService.batch(cardLimit));
+    } else {
+        r = orderProcessor.processAllPending(paymentService.batch(cardLimit));
+    }
+    printBatchResult(r);
+}
+
+/** Advance many orders one step at once (e.g. every PACKED order of a day to SHIPPED) */
+private void bulkStatusUpdate(BufferedReader console) throws Exception {
+    System.out.print(LAVENDER + "Current status to advance (e.g. PACKED, Enter = any): " + RESET);
+    String statusText = console.readLine();
+    if (statusText == null) statusText = "";
+    statusText = statusText.trim();
+    OrderStatus status = OrderStatus.parse(statusText);
+    if (!statusText.equals("") && status == null) {
+        System.out.print(ROSE + "Unknown status \"" + statusText + "\".\n" + RESET);
+        return;
+    }
+    if (status != null && status.next() == null) {
+        System.out.print(ROSE + status + " orders cannot be advanced here"
+                + (status == OrderStatus.PENDING ? " (use Process All Pending Orders)" : "") + ".\n" + RESET);
+        return;
+    }
+    System.out.print(LAVENDER + "From date (YYYY-MM-DD, Enter = any): " + RESET);
+    String from = console.readLine();
+    System.out.print(LAVENDER + "To date (YYYY-MM-DD, Enter = any): " + RESET);
+    String to = console.readLine();
+    System.out.print(LAVENDER + "Order IDs, comma separated (Enter = all matching orders): " + RESET);
+    String idText = console.readLine();
+
+    List<String> ids = new java.util.ArrayList<String>();
+    if (idText != null) {
+        String[] parts = idText.split(",");
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].trim().length() > 0) ids.add(parts[i].trim());
+        }
+    }
+    BulkStatusUpdate bulk = new BulkStatusUpdate(dp, log);
+    printBulkResult(bulk.advance(status, from == null ? "" : from.trim(), to == null ? "" : to.trim(), ids));
+}
+
+/** Summary of a bulk status update (also used by Main --advance-status) */
+public static void printBulkResult(BulkStatusUpdate.Result r) {
+    System.out.print(PINK + BOLD + "Bulk Status Update" + RESET + "\n");
+    System.out.print(MINT + "Orders selected: " + RESET + r.selected + "\n");
+    for (int s = 0; s < r.advancedTo.length; s++) {
+        if (r.advancedTo[s] > 0) {
+            System.out.print(MINT + "Advanced to " + OrderStatus.of(s) + ": " + RESET + r.advancedTo[s] + "\n");
+        }
+    }
+    if (r.trackingAssigned > 0) System.out.print(MINT + "Tracking IDs assigned: " + RESET + r.trackingAssigned + "\n");
+    if (r.notEligible > 0) System.out.print(ROSE + "Not advanced (pending or finished): " + RESET + r.notEligible + "\n");
+    if (r.notFound > 0) System.out.print(ROSE + "Order IDs not found: " + RESET + r.notFound + "\n");
+    System.out.print(SOFTGRAY + "Records saved: " + r.saved + "; " + (r.nanos / 1000000) + " ms" + RESET + "\n");
+}
+
+/** Outcome and throughput summary of a batch run (also used by Main --process-pending) */
+public static void printBatchResult(OrderProcessor.BatchResult r) {
+    System.out.print(PINK + BOLD + "Batch Processing Summary" + RESET + "\n");
+    System.out.print(MINT + "Pending orders processed: " + RESET + r.pending + "\n");
+    System.out.print(MINT + "Packed: " + RESET + r.packed + "\n");
+    System.out.print(ROSE + "Cancelled (inventory shortage): " + RESET + r.stockShortage + "\n");
+    System.out.print(ROSE + "Cancelled (payment declined): " + RESET + r.paymentDeclined + "\n");
+    System.out.print(ROSE + "Cancelled (invalid product): " + RESET + r.invalidProduct + "\n");
+    if (r.reservationExpired > 0) {
+        System.out.print(ROSE + "Cancelled (reservation expired, payment voided): " + RESET + r.reservationExpired + "\n");
+    }
+    if (r.duplicateInvoices > 0) {
+        System.out.print(ROSE + "Duplicate invoices not written: " + RESET + r.duplicateInvoices + "\n");
+    }
+    System.out.print(SOFTGRAY + "Records saved: " + r.saved + "; " + (r.nanos / 1000000) + " ms ("
+            + r.ordersPerSecond() + " orders/sec)" + RESET + "\n");
+}
+
+/** Invoice totals per month and lookup by invoice ID, answered from the in-memory ledger (no file scan) */
+private void showInvoiceLedger(BufferedReader console) throws Exception {
+    InvoiceLedger ledger = dp.invoices();
+    System.out.print(PINK + BOLD + "Invoice Ledger" + RESET + "\n");
+    printLine();
+    System.out.printf(LAVENDER + "%-10s %-10s %-15s" + RESET + "%n", "Month", "Invoices", "Total (BDT)");
+    List<InvoiceLedger.MonthTotal> months = ledger.monthTotals();
+    for (int i = 0; i < months.size(); i++) {
+        InvoiceLedger.MonthTotal m = months.get(i);
+        System.out.printf("%-10s %-10d %-15d%n", m.month.length() == 0 ? "-" : m.month, m.count, m.amount);
+    }
+    System.out.print(SOFTGRAY + "Invoices: " + ledger.count() + RESET + "\n");
+    if (ledger.duplicatesOnDisk() > 0) {
+        System.out.print(ROSE + "Duplicate IDs already in invoices.txt: " + ledger.duplicatesOnDisk()
+                + " (first one counted)" + RESET + "\n");
+    }
+    if (ledger.suppressedCount() > 0) {
+        System.out.print(ROSE + "Duplicates refused this session: " + ledger.suppressedCount() + RESET + "\n");
+    }
+    printLine();
+    System.out.print(SOFTGRAY + "Invoice ID to look up (e.g. INV-202602-1006, Enter to skip): " + RESET);
+    String id = console.readLine();
+    if (id == null || id.trim().equals("")) return;
+    InvoiceLedger.Invoice inv = ledger.find(id);
+    if (inv == null) {
+        System.out.print(ROSE + "Invoice " + id.trim() + " not found." + RESET + "\n");
+    } else {
+        System.out.print(MINT + inv.id + RESET + " | BDT " + inv.amount + "\n");
+    }
+}
+
+/** Per-user login statistics, kept up to date as audit lines are written (login_audit.txt is not rescanned) */
+private void showLoginAuditSummary() {
+    LoginAudit audit = dp.loginAudit();
+    List<LoginAudit.UserStats> users = audit.summary();
+
+    System.out.print(PINK + BOLD + "Login Audit Summary" + RESET + "\n");
+    printLine();
+    for (int i = 0; i < users.size(); i++) {
+        LoginAudit.UserStats u = users.get(i);
+        System.out.print(LAVENDER + u.username + RESET + SOFTGRAY + " | OK: " + RESET + MINT + u.successes + RESET
+                + SOFTGRAY + " | FAIL: " + RESET + (u.failures > 0 ? ROSE : MINT) + u.failures + RESET
+                + SOFTGRAY + " | Other: " + RESET + u.otherActions
+                + SOFTGRAY + " | Last seen: " + RESET + u.lastSeen + "\n");
+        if (u.bursts > 0) {
+            System.out.print(ANSI_Yellow + "   " + u.bursts + " failure burst(s) (" + LoginAudit.BURST_FAILURES + "+ fails within "
+                    + LoginAudit.BURST_WINDOW_SECONDS / 60 + " min), last at " + u.lastBurst + RESET + "\n");
+        }
+    }
+    if (users.isEmpty()) {
+        System.out.print(ROSE + "No audit entries yet." + RESET + "\n");
+    }
+    printLine();
+    System.out.print(SOFTGRAY + users.size() + " user(s); " + audit.caughtUpLines() + " new audit line(s) read at startup" + RESET + "\n");
+    audit.saveSummary();
+}
+
+/** Most recent log entries from the in-memory ring (no file access) */
+private void showRecentActivity(BufferedReader console) throws Exception {
+    System.out.print(LAVENDER + "Order ID (Enter = all, ADMIN = system entries): " + RESET);
+    String id = console.readLine();
+    if (id == null) id = "";
+    id = id.trim();
+
+    List<LogEvent> events = log.recentEvents(20, id);
+    System.out.print(PINK + BOLD + "Recent Activity" + RESET + "\n");
+    printLine();
+    for (int i = 0; i < events.size(); i++) {
+        LogEvent e = events.get(i);
+        System.out.print(SOFTGRAY + e.timeText() + " | " + RESET + e.orderId + SOFTGRAY + " | " + RESET
+                + LAVENDER + e.type + RESET + SOFTGRAY + " | " + e.admin + " | " + RESET + e.detail + "\n");
+    }
+    if (events.isEmpty()) {
+        System.out.print(ROSE + "No recent activity this session." + RESET + "\n");
+    }
+    printLine();
+}
+
+/** Show the last lines of the order log and login audit, then follow both until Enter is pressed */
+private void liveLogMonitor(BufferedReader console) throws Exception {
+    String[] names = { "logs.txt", "login_audit.txt" };
+    TailReader[] tails = new TailReader[names.length];
+    log.flush();
+
+    System.out.print(PINK + BOLD + "Live Log Monitor" + RESET + "\n");
+    printLine();
+    for (int i = 0; i < names.length; i++) {
+        String file = dp.path(names[i]);
+        tails[i] = new TailReader(file);
+        System.out.print(LAVENDER + names[i] + " (last 10)" + RESET + "\n");
+        List<String> last = TailReader.lastLines(file, 10);
+        for (int k = 0; k < last.size(); k++) {
+            System.out.print(SOFTGRAY + "  " + RESET + last.get(k) + "\n");
+        }
+        if (last.isEmpty()) System.out.print(SOFTGRAY + "  (empty)" + RESET + "\n");
+    }
+    printLine();
+    System.out.print(MINT + "Following new entries... press Enter to stop." + RESET + "\n");
+
+    while (true) {
+        for (int i = 0; i < tails.length; i++) {
+            List<String> lines = tails[i].poll();
+            for (int k = 0; k < lines.size(); k++) {
+                System.out.print(LAVENDER + "[" + names[i] + "] " + RESET + lines.get(k) + "\n");
+            }
+        }
+        if (console.ready()) {
+            console.readLine();
+            break;
+        }
+        Thread.sleep(500);
+    }
+    System.out.print(SOFTGRAY + "Monitor stopped." + RESET + "\n");
+}
+
 private void autoCancelStaleOrders(int days) throws Exception {
     java.time.LocalDate today = java.time.LocalDate.now();
     int cancelled = 0;
@@ -1864,13 +2025,14 @@ private void autoCancelStaleOrders(int days) throws Exception {
     for (int i = 0; i < dp.orderCount; i++) {
         Order o = dp.orders[i];
         if (o == null) continue;
-        if (!"PENDING".equals(o.status)) continue;
+        if (o.status != OrderStatus.PENDING) continue;
 
         try {
             java.time.LocalDate d = java.time.LocalDate.parse(o.date); // expects YYYY-MM-DD
             long diff = java.time.temporal.ChronoUnit.DAYS.between(d, today);
             if (diff >= days) {
-                o.status = "CANCELLED";
+                dp.setStatus(o, OrderStatus.CANCELLED);
+                dp.markOrderDirty(o);
                 cancelled++;
                 // if you have workflow log:
                 // log.write(o.orderId, "AUTO_CANCEL", "Order stale (" + diff + " days)");
@@ -1881,8 +2043,8 @@ private void autoCancelStaleOrders(int days) throws Exception {
     }
 
     if (cancelled > 0) {
-        dp.saveAll();
-        System.out.print(MINT + "Auto-cancelled " + cancelled + " stale PENDING orders.\n" + RESET);
+        dp.saveAll();   // journals just the cancelled orders
+        System.out.print(MINT + "Auto-cancelled " + cancelled + " stale PENDING orders (" + dp.lastFlushCount + " records saved).\n" + RESET);
     } else {
         System.out.print(ROSE + "No stale PENDING orders found.\n" + RESET);
     }
@@ -1891,7 +2053,7 @@ private void showOrdersForStatusUpdate() {
     System.out.println(PINK + BOLD + "\nOrders List (Choose an Order ID)" + RESET);
     printLine();
 
-    if (dp.orderCount == 0) {
+    if (allOrderSlots() == 0) {
         System.out.println(ROSE+ "No orders found." + RESET);
         printLine();
         return;
@@ -1903,19 +2065,12 @@ private void showOrdersForStatusUpdate() {
     System.out.println(SOFTGRAY + "--------------------------------------------------------------" + RESET);
 
     // Rows
-    for (int i = 0; i < dp.orderCount; i++) {
-        Order o = dp.orders[i];
+    for (int i = 0; i < allOrderSlots(); i++) {
+        Order o = orderAt(i);
         if (o == null) continue;
 
-        String st = o.status == null ? "" : o.status.trim();
-
-        // Color status
-        String stColor = SOFTGRAY;
-        if (st.equals("PENDING")) stColor = ANSI_MUTED_PEACH;            // warning
-        else if (st.equals("OUT_FOR_DELIVERY")) stColor = ANSI_SOFT_CORAL;        // 🚚 on the way (attention)
-        else if (st.equals("DELIVERED")) stColor = MINT; // success
-        else if (st.equals("CANCELLED")) stColor = ROSE;     // warning
-        else stColor = SOFTGRAY;
+        OrderStatus st = o.status;
+        String stColor = UPDATE_STATUS_COLORS[st.ordinal()];
 
         int total = o.totalAmount;
 
@@ -1950,7 +2105,7 @@ private void showOrdersPreview() {
     System.out.println(PINK + BOLD + "\nOrders List (Preview)" + RESET);
     printLine();
 
-    if (dp.orderCount == 0) {
+    if (allOrderSlots() == 0) {
         System.out.println(ROSE + "No orders available." + RESET);
         printLine();
         return;
@@ -1962,21 +2117,12 @@ private void showOrdersPreview() {
     System.out.println(SOFTGRAY + "--------------------------------------------------------------" + RESET);
 
     // Rows
-    for (int i = 0; i < dp.orderCount; i++) {
-        Order o = dp.orders[i];
+    for (int i = 0; i < allOrderSlots(); i++) {
+        Order o = orderAt(i);
         if (o == null) continue;
 
-        String st = (o.status == null) ? "" : o.status.trim();
-
-        // Color by status
-        String stColor = SOFTGRAY;
-        if (st.equals("PENDING")) stColor = MINT;
-        else if (st.equals("PACKED")) stColor = MINT;
-        else if (st.equals("SHIPPED")) stColor = MINT;
-        else if (st.equals("OUT_FOR_DELIVERY")) stColor = ANSI_SOFT_CORAL;
-        else if (st.equals("DELIVERED")) stColor = MINT;
-        else if (st.equals("CANCELLED")) stColor = ROSE;
-        else stColor = SOFTGRAY;
+        OrderStatus st = o.status;
+        String stColor = PREVIEW_STATUS_COLORS[st.ordinal()];
 
         // ✅ FIX TOTAL: if stored total is 0, compute from items
         int total = o.totalAmount;
@@ -2121,7 +2267,7 @@ private void showReorderPreview() {
     System.out.println(PINK + BOLD + "\nPrevious Orders (For Reorder)" + RESET);
     printLine();
 
-    if (dp.orderCount == 0) {
+    if (allOrderSlots() == 0) {
         System.out.println(ROSE + "No orders found." + RESET);
         printLine();
         return;
@@ -2131,26 +2277,16 @@ private void showReorderPreview() {
             "OrderID", "Date", "Status", "Payment", "Total");
     System.out.println(SOFTGRAY + "--------------------------------------------------------------" + RESET);
 
-    for (int i = 0; i < dp.orderCount; i++) {
-        Order o = dp.orders[i];
+    // Skip cancelled orders (optional, but useful for reorder)
+    BitSet slots = dp.slotsWithStatus(OrderStatus.ALL & ~OrderStatus.CANCELLED.bit());
+    for (int i = slots.nextSetBit(0); i >= 0; i = slots.nextSetBit(i + 1)) {
+        Order o = orderAt(i);
         if (o == null) continue;
 
-        // Skip cancelled orders (optional, but useful for reorder)
-        if (o.status != null && o.status.equalsIgnoreCase("CANCELLED")) continue;
-
-        String st = (o.status == null) ? "" : o.status.trim().toUpperCase();
-
-        String stColor = SOFTGRAY;
-        if (st.equals("PENDING")) stColor = MINT;
-        else if (st.equals("PACKED")) stColor = MINT;
-        else if (st.equals("SHIPPED")) stColor = MINT;
-        else if (st.equals("OUT_FOR_DELIVERY")) stColor = MINT;
-        else if (st.equals("DELIVERED")) stColor = MINT;
-
         System.out.printf("%-10s %-12s %s%-18s%s %-10s %-10d%n",
                 o.orderId,
                 o.date,
-                stColor, st, RESET,
+                MINT, o.status, RESET,
                 (o.paymentMode == null ? "" : o.paymentMode),
                 o.totalAmount
         );
@@ -2162,7 +2298,7 @@ private void showTimelinePreview() {
     System.out.print(PINK + "\nOrders Available for Timeline\n" + RESET);
     printLine();
 
-    if (dp.orderCount == 0) {
+    if (allOrderSlots() == 0) {
         System.out.print(ROSE + "No orders found.\n" + RESET);
         printLine();
         return;
@@ -2172,8 +2308,8 @@ private void showTimelinePreview() {
             "OrderID", "Date", "Status");
     System.out.print(SOFTGRAY + "----------------------------------------\n" + RESET);
 
-    for (int i = 0; i < dp.orderCount; i++) {
-        Order o = dp.orders[i];
+    for (int i = 0; i < allOrderSlots(); i++) {
+        Order o = orderAt(i);
         if (o == null) continue;
 
         System.out.printf("%-8s %-12s %-18s\n",
@@ -2194,7 +2330,7 @@ private void deleteAllOrderHistory(BufferedReader console) throws Exception {
         return;
     }
 
-    if (dp.orderCount == 0) {
+    if (allOrderSlots() == 0) {
         System.out.print(SOFTGRAY + "No orders to delete.\n" + RESET);
         return;
     }
@@ -2220,7 +2356,8 @@ private void deleteAllOrderHistory(BufferedReader console) throws Exception {
         return;
     }
 
-    // ✅ Count before delete
+    // ✅ Count before delete (history kept on disk is backed up too)
+    dp.materializeHistory();
     int deletedCount = dp.orderCount;
 
     String archiveFileName = "orders_archive.txt";
@@ -2270,10 +2407,8 @@ private void deleteAllOrderHistory(BufferedReader console) throws Exception {
     // ===============================
     // ✅ CLEAR ORDERS FROM MEMORY
     // ===============================
-    for (int i = 0; i < dp.orderCount; i++) {
-        dp.orders[i] = null;
-    }
-    dp.orderCount = 0;
+    dp.clearOrders();
+    dp.orderSteps().clear();   // order IDs start over; no recorded step may carry over to a new order
 
     // ✅ Clear orders.txt
     dp.saveOrders();
@@ -2307,7 +2442,8 @@ private void deleteAllOrderHistory(BufferedReader console) throws Exception {
     );
     dp.appendLoginAudit("DELETE_ORDERS", currentAdmin.username);
 
-    String lastAuditLine = readLastLine(dp.path("login_audit.txt"));
+    dp.loginAudit().flush();
+    String lastAuditLine = TailReader.lastLine(dp.path("login_audit.txt"));   // reads only the end of the file
 
     // ===============================
     // ✅ FINAL OUTPUT
@@ -2328,23 +2464,6 @@ private void deleteAllOrderHistory(BufferedReader console) throws Exception {
     }
 }
 
-private String readLastLine(String filePath) {
-    BufferedReader br = null;
-    try {
-        br = new BufferedReader(new FileReader(filePath));
-        String line;
-        String last = "";
-        while ((line = br.readLine()) != null) {
-            line = line.trim();
-            if (!line.equals("")) last = line;
-        }
-        return last;
-    } catch (Exception e) {
-        return "";
-    } finally {
-        try { if (br != null) br.close(); } catch (Exception ex) {}
-    }
-}
 private int[] deleteAllReceiptFiles() {
     int deleted = 0;
     int failed = 0;
@@ -2443,7 +2562,8 @@ private void restoreOrdersFromArchive(BufferedReader console) throws Exception {
         return;
     }
 
-    // ✅ Backup orders.txt so we can UNDO
+    // ✅ Fold pending journal records into orders.txt, then back it up so we can UNDO
+    dp.compactOrderJournal();
     backupOrdersBeforeRestore();
 
     int restoredCount = 0;
@@ -2723,6 +2843,8 @@ private void undoLastRestore(BufferedReader console) throws Exception {
         try { if (fw != null) fw.close(); } catch (Exception ex) {}
     }
 
+    // orders.txt was replaced wholesale; later journal records no longer apply
+    dp.discardOrderJournal();
     dp.loadAll();
 
     log.write("ADMIN", "UNDO restore (orders.txt reverted).");